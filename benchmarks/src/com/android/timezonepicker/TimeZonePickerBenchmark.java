@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks for the hot paths of the picker: loading the catalog, the
+ * suggestions of the drop down and filtering the result list.
+ *
+ * The benchmark library reports the median time and the allocation count of
+ * each benchmark. Run with:
+ *   atest TimeZonePickerBenchmarks
+ */
+@RunWith(JUnit4.class)
+public class TimeZonePickerBenchmark {
+    private static final String DEFAULT_TIME_ZONE_ID = "America/Los_Angeles";
+    // 2013-07-01 12:00 UTC, so that results don't depend on the day of the run
+    private static final long TIME_MILLIS = 1372680000000L;
+
+    /**
+     * What users typically type: prefixes, whole names, offsets, times, typos,
+     * and the offset prefixes typed on the way to an offset
+     */
+    private static final String[] QUERIES = {
+            "a", "un", "uni", "united", "united s", "fr", "paris", "new y", "tokyo",
+            "gmt", "gmt+", "gmt+5", "+", "+1", "-3", "10", "10:30", "9pm", "germny",
+            "austrlia", "sao", "cote",
+    };
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+    private TimeZoneData mTimeZoneData;
+    private TimeZoneQueryEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mTimeZoneData = new TimeZoneData(mContext, DEFAULT_TIME_ZONE_ID, TIME_MILLIS);
+        mEngine = new TimeZoneQueryEngine(mTimeZoneData);
+    }
+
+    @Test
+    public void loadTimeZones() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            new TimeZoneData(mContext, DEFAULT_TIME_ZONE_ID, TIME_MILLIS);
+        }
+    }
+
+    /**
+     * Loading runs the dedup for every zone.tab row: each zone is looked up
+     * among the zones added before it.
+     */
+    @Test
+    public void getIdenticalTimeZoneInTheCountry() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final ArrayList<TimeZoneInfo> timeZones = new ArrayList<TimeZoneInfo>(
+                mTimeZoneData.getSnapshot().timeZones);
+        final int size = timeZones.size();
+        final List<List<TimeZoneInfo>> added = new ArrayList<List<TimeZoneInfo>>(size);
+        for (int i = 0; i < size; i++) {
+            added.add(timeZones.subList(0, i));
+        }
+        int i = 0;
+        while (state.keepRunning()) {
+            TimeZoneData.getIdenticalTimeZoneInTheCountry(added.get(i), timeZones.get(i));
+            i = (i + 1) % size;
+        }
+    }
+
+    @Test
+    public void sortTimeZones() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final ArrayList<TimeZoneInfo> shuffled = new ArrayList<TimeZoneInfo>(
+                mTimeZoneData.getSnapshot().timeZones);
+        Collections.shuffle(shuffled, new Random(0));
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            ArrayList<TimeZoneInfo> timeZones = new ArrayList<TimeZoneInfo>(shuffled);
+            state.resumeTiming();
+            Collections.sort(timeZones);
+        }
+    }
+
+    @Test
+    public void getGmtDisplayName() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final int size = mTimeZoneData.size();
+        int i = 0;
+        while (state.keepRunning()) {
+            mTimeZoneData.get(i).getGmtDisplayName(mContext);
+            i = (i + 1) % size;
+        }
+    }
+
+    @Test
+    public void getLocalTime() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final int size = mTimeZoneData.size();
+        int i = 0;
+        while (state.keepRunning()) {
+            mTimeZoneData.get(i).getLocalTime(TIME_MILLIS);
+            i = (i + 1) % size;
+        }
+    }
+
+    /**
+     * What TimeZoneFilterTypeAdapter's filter runs on every keystroke.
+     */
+    @Test
+    public void suggest() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            mEngine.suggest(TimeZoneQueryEngine.Request.forSuggestions(QUERIES[i],
+                    TimeZoneFilterTypeAdapter.DEFAULT_MAX_RESULTS, null));
+            i = (i + 1) % QUERIES.length;
+        }
+    }
+
+    @Test
+    public void suggestTypingOneLetterAtATime() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final String query = "united kingdom";
+        int length = 1;
+        while (state.keepRunning()) {
+            mEngine.suggest(TimeZoneQueryEngine.Request.forSuggestions(
+                    query.substring(0, length), TimeZoneFilterTypeAdapter.DEFAULT_MAX_RESULTS,
+                    null));
+            length = length % query.length() + 1;
+        }
+    }
+
+    @Test
+    public void onSetFilter() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final TimeZoneResultAdapter adapter = new TimeZoneResultAdapter(mContext, mEngine, null);
+        final int[] filterTypes = {
+                TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE,
+                TimeZoneFilterTypeAdapter.FILTER_TYPE_COUNTRY,
+                TimeZoneFilterTypeAdapter.FILTER_TYPE_GMT,
+                TimeZoneFilterTypeAdapter.FILTER_TYPE_LOCAL_TIME,
+        };
+        final String country = mTimeZoneData.get(0).mCountry;
+        int i = 0;
+        while (state.keepRunning()) {
+            int filterType = filterTypes[i];
+            switch (filterType) {
+                case TimeZoneFilterTypeAdapter.FILTER_TYPE_COUNTRY:
+                    adapter.onSetFilter(filterType, country, 0);
+                    break;
+                case TimeZoneFilterTypeAdapter.FILTER_TYPE_GMT:
+                    adapter.onSetFilter(filterType, null, 5);
+                    break;
+                case TimeZoneFilterTypeAdapter.FILTER_TYPE_LOCAL_TIME:
+                    adapter.onSetFilter(filterType, null, 10 * 60);
+                    break;
+                default:
+                    adapter.onSetFilter(filterType, null, 0);
+                    break;
+            }
+            i = (i + 1) % filterTypes.length;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.content.res.Resources;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.Locale;
+
+/**
+ * The display names of all countries in one locale, indexed by their ISO
+ * 3166 code. Built once per locale, with the picker's own names for
+ * countries the platform doesn't know or names differently, and shared by
+ * all catalogs. The tables of the last few locales used are kept.
+ */
+final class CountryNameTable {
+    private static final String TAG = "CountryNameTable";
+    private static final boolean DEBUG = false;
+
+    private static final String PALESTINE_COUNTRY_CODE = "PS";
+    private static final int SIZE = 26 * 26;
+
+    /** How many locales' tables are kept */
+    private static final int MAX_TABLES = 4;
+
+    /**
+     * By the locale of the names and the locale of the resources the
+     * picker's own names came from, which differ before JB MR1
+     */
+    private static final LruCache<String, CountryNameTable> sTables =
+            new LruCache<String, CountryNameTable>(MAX_TABLES);
+
+    /** By {@link #slot} */
+    private final String[] mNames = new String[SIZE];
+
+    /**
+     * @param res resources for the locale, if possible
+     */
+    static CountryNameTable get(Resources res, Locale locale) {
+        final String key = locale + "/" + res.getConfiguration().locale;
+        synchronized (sTables) {
+            CountryNameTable table = sTables.get(key);
+            if (table == null) {
+                table = new CountryNameTable(res, locale);
+                sTables.put(key, table);
+            }
+            return table;
+        }
+    }
+
+    private CountryNameTable(Resources res, Locale locale) {
+        final long start = System.currentTimeMillis();
+        final String lang = locale.getLanguage();
+        for (String code : Locale.getISOCountries()) {
+            int slot = slot(code);
+            if (slot != -1) {
+                String name = new Locale(lang, code).getDisplayCountry(locale);
+                // Unknown countries are displayed as their code
+                if (!code.equals(name)) {
+                    mNames[slot] = name;
+                }
+            }
+        }
+
+        String[] backupCodes = res.getStringArray(R.array.backup_country_codes);
+        String[] backupNames = res.getStringArray(R.array.backup_country_names);
+        for (int i = 0; i < Math.min(backupCodes.length, backupNames.length); i++) {
+            int slot = slot(backupCodes[i]);
+            if (slot != -1 && mNames[slot] == null) {
+                mNames[slot] = backupNames[i];
+            }
+        }
+
+        mNames[slot(PALESTINE_COUNTRY_CODE)] = res.getString(R.string.palestine_display_name);
+
+        if (DEBUG) {
+            Log.d(TAG, "Time to load country names for " + locale + " (ms): "
+                    + (System.currentTimeMillis() - start));
+        }
+    }
+
+    /**
+     * @return the display name of the country, or the code if it has none
+     */
+    String get(String countryCode) {
+        int slot = slot(countryCode);
+        if (slot == -1) {
+            // Lower case codes are matched ignoring case, as before
+            slot = slot(countryCode.toUpperCase(Locale.ROOT));
+        }
+        String name = slot == -1 ? null : mNames[slot];
+        return name != null ? name : countryCode;
+    }
+
+    /**
+     * @return the index of a two letter upper case code, or -1
+     */
+    private static int slot(String code) {
+        if (code.length() != 2) {
+            return -1;
+        }
+        final int first = code.charAt(0) - 'A';
+        final int second = code.charAt(1) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return -1;
+        }
+        return first * 26 + second;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.util.SparseIntArray;
+
+/**
+ * Turns one list of ids into another with removes, moves and inserts, for
+ * lists where no id appears twice, like lists of catalog indices.
+ *
+ * Because ids are unique, an id either stays, moves or goes, so there is no
+ * need for a general edit script. Filtering keeps the catalog order, so
+ * narrowing or widening a filter comes out as removes or inserts only.
+ */
+class IntArrayDiff {
+    interface Callback {
+        void onRemoved(int position, int count);
+
+        void onInserted(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+    }
+
+    private IntArrayDiff() {
+    }
+
+    /**
+     * Reports the changes from oldIds[0, oldLength) to newIds[0, newLength).
+     * Positions are those of the list after the changes reported before.
+     */
+    static void dispatch(int[] oldIds, int oldLength, int[] newIds, int newLength,
+            Callback callback) {
+        SparseIntArray newPositions = new SparseIntArray(newLength);
+        for (int i = 0; i < newLength; i++) {
+            newPositions.put(newIds[i], i);
+        }
+
+        // The list as the callback sees it
+        int[] current = new int[Math.max(oldLength, newLength)];
+        int length = 0;
+
+        // Removes, back to front so that positions don't shift, in ranges
+        int removeEnd = -1;
+        for (int i = oldLength - 1; i >= 0; i--) {
+            boolean removed = newPositions.indexOfKey(oldIds[i]) < 0;
+            if (removed && removeEnd == -1) {
+                removeEnd = i + 1;
+            } else if (!removed && removeEnd != -1) {
+                callback.onRemoved(i + 1, removeEnd - i - 1);
+                removeEnd = -1;
+            }
+        }
+        if (removeEnd != -1) {
+            callback.onRemoved(0, removeEnd);
+        }
+        for (int i = 0; i < oldLength; i++) {
+            if (newPositions.indexOfKey(oldIds[i]) >= 0) {
+                current[length++] = oldIds[i];
+            }
+        }
+
+        // Moves and inserts, front to back
+        int insertStart = -1;
+        for (int i = 0; i < newLength; i++) {
+            final int id = newIds[i];
+            if (i < length && current[i] == id) {
+                if (insertStart != -1) {
+                    callback.onInserted(insertStart, i - insertStart);
+                    insertStart = -1;
+                }
+                continue;
+            }
+
+            int from = -1;
+            for (int j = i + 1; j < length; j++) {
+                if (current[j] == id) {
+                    from = j;
+                    break;
+                }
+            }
+
+            if (from != -1) {
+                if (insertStart != -1) {
+                    callback.onInserted(insertStart, i - insertStart);
+                    insertStart = -1;
+                }
+                System.arraycopy(current, i, current, i + 1, from - i);
+                callback.onMoved(from, i);
+            } else {
+                System.arraycopy(current, i, current, i + 1, length - i);
+                length++;
+                if (insertStart == -1) {
+                    insertStart = i;
+                }
+            }
+            current[i] = id;
+        }
+        if (insertStart != -1) {
+            callback.onInserted(insertStart, newLength - insertStart);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * The recently selected time zones, kept in memory for the whole process.
+ *
+ * The list is read from shared preferences once, in the background, and
+ * written back in the background after changes. Several selections in a row
+ * result in one write. The preference keeps its old format, a comma separated
+ * list of ids with the most recent last, so older versions can still read it.
+ *
+ * When the list is full, the least recent time zone is dropped. With a
+ * frequency weight, time zones that are picked often outlive ones that were
+ * picked more recently but only once.
+ */
+public class RecentTimeZoneStore {
+    private static final String TAG = "RecentTimeZoneStore";
+    private static final boolean DEBUG = false;
+
+    /** SharedPref name and key for recent time zones */
+    private static final String SHARED_PREFS_NAME = "com.android.calendar_preferences";
+    private static final String KEY_RECENT_TIMEZONES = "preferences_recent_timezones";
+    /** How often each of the recent time zones was picked, in the same order */
+    private static final String KEY_RECENT_TIMEZONE_COUNTS = "preferences_recent_timezone_counts";
+
+    /**
+     * The delimiter we use when serializing recent timezones to shared
+     * preferences
+     */
+    private static final String RECENT_TIMEZONES_DELIMITER = ",";
+
+    /** The default maximum number of recent timezones to save */
+    public static final int DEFAULT_CAPACITY = 3;
+
+    private static RecentTimeZoneStore sInstance;
+
+    private static class Entry {
+        final String id;
+        int count;
+
+        Entry(String id, int count) {
+            this.id = id;
+            this.count = count;
+        }
+    }
+
+    private final Context mContext;
+    private final Executor mExecutor = AsyncTask.SERIAL_EXECUTOR;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // All guarded by this
+    /** Most recent first */
+    private final ArrayList<Entry> mEntries = new ArrayList<Entry>();
+    private int mCapacity = DEFAULT_CAPACITY;
+    private int mFrequencyWeight = 0;
+    private boolean mLoadStarted;
+    private boolean mLoaded;
+    private boolean mWriteScheduled;
+    private ArrayList<Runnable> mOnLoaded = new ArrayList<Runnable>();
+    /** Bumped on every change, to invalidate mResolvedIndices */
+    private int mVersion;
+    private TimeZoneData mResolvedFor;
+    private int mResolvedVersion;
+    private int[] mResolvedIndices;
+
+    private final Runnable mLoadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            load();
+        }
+    };
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    public static synchronized RecentTimeZoneStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new RecentTimeZoneStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private RecentTimeZoneStore(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Sets how many recent time zones are kept. Takes effect on the next
+     * selection.
+     */
+    public synchronized void setCapacity(int capacity) {
+        mCapacity = Math.max(capacity, 1);
+    }
+
+    /**
+     * Sets how much one more selection of a time zone counts against being
+     * one place less recent, when choosing which time zone to drop. 0, the
+     * default, always drops the least recent one.
+     */
+    public synchronized void setFrequencyWeight(int weight) {
+        mFrequencyWeight = Math.max(weight, 0);
+    }
+
+    public synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Starts reading the list from shared preferences in the background,
+     * unless it has been read already.
+     */
+    public synchronized void startLoading() {
+        if (!mLoadStarted) {
+            mLoadStarted = true;
+            mExecutor.execute(mLoadRunnable);
+        }
+    }
+
+    /**
+     * Runs r on the main thread once the list has been read. If it has, r is
+     * posted right away.
+     */
+    public synchronized void runWhenLoaded(Runnable r) {
+        if (mLoaded) {
+            mHandler.post(r);
+        } else {
+            mOnLoaded.add(r);
+            startLoading();
+        }
+    }
+
+    /**
+     * Blocks until the list has been read, starting to read it if needed.
+     * For background threads only; the list is read on another background
+     * thread.
+     *
+     * @return false if interrupted while waiting
+     */
+    public synchronized boolean awaitLoaded() {
+        startLoading();
+        while (!mLoaded) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the recent time zones, most recent first, leaving out the
+     * default time zone. Empty until the list has been read.
+     *
+     * @return TimeZoneData indices
+     */
+    public synchronized int[] getTimeZoneIndices(TimeZoneData tzd) {
+        if (mResolvedFor == tzd && mResolvedVersion == mVersion) {
+            return mResolvedIndices;
+        }
+
+        int[] indices = new int[mEntries.size()];
+        int count = 0;
+        for (Entry entry : mEntries) {
+            if (!entry.id.equals(tzd.mDefaultTimeZoneId)) {
+                int index = tzd.findIndexByTimeZoneIdSlow(entry.id);
+                if (index != -1) {
+                    indices[count++] = index;
+                }
+            }
+        }
+
+        mResolvedIndices = new int[count];
+        System.arraycopy(indices, 0, mResolvedIndices, 0, count);
+        mResolvedFor = tzd;
+        mResolvedVersion = mVersion;
+        return mResolvedIndices;
+    }
+
+    /**
+     * Moves the time zone to the front of the list and saves the list in the
+     * background.
+     */
+    public synchronized void add(String id) {
+        if (TextUtils.isEmpty(id)) {
+            return;
+        }
+
+        int count = 1;
+        for (int i = 0; i < mEntries.size(); i++) {
+            if (mEntries.get(i).id.equals(id)) {
+                count += mEntries.remove(i).count;
+                break;
+            }
+        }
+        mEntries.add(0, new Entry(id, count));
+        trim();
+        mVersion++;
+
+        if (!mWriteScheduled) {
+            mWriteScheduled = true;
+            // Queued behind the load, if that hasn't run yet
+            startLoading();
+            mExecutor.execute(mWriteRunnable);
+        }
+    }
+
+    private void trim() {
+        while (mEntries.size() > mCapacity) {
+            // The front entry was just picked and stays
+            int victim = mEntries.size() - 1;
+            long victimScore = Long.MAX_VALUE;
+            for (int i = mEntries.size() - 1; i > 0; i--) {
+                long score = (long) mEntries.get(i).count * mFrequencyWeight - i;
+                if (score < victimScore) {
+                    victimScore = score;
+                    victim = i;
+                }
+            }
+            if (DEBUG) {
+                Log.d(TAG, "Dropping " + mEntries.get(victim).id);
+            }
+            mEntries.remove(victim);
+        }
+    }
+
+    private void load() {
+        SharedPreferences prefs = mContext.getSharedPreferences(SHARED_PREFS_NAME,
+                Context.MODE_PRIVATE);
+        String recentsString = prefs.getString(KEY_RECENT_TIMEZONES, null);
+        String countsString = prefs.getString(KEY_RECENT_TIMEZONE_COUNTS, null);
+
+        ArrayList<Runnable> onLoaded;
+        synchronized (this) {
+            if (!TextUtils.isEmpty(recentsString)) {
+                String[] recents = recentsString.split(RECENT_TIMEZONES_DELIMITER);
+                String[] counts = countsString == null
+                        ? new String[0] : countsString.split(RECENT_TIMEZONES_DELIMITER);
+                if (counts.length != recents.length) {
+                    counts = new String[0];
+                }
+
+                // Selections made before the list was read are more recent
+                for (int i = recents.length - 1; i >= 0; i--) {
+                    if (TextUtils.isEmpty(recents[i]) || indexOf(recents[i]) != -1) {
+                        continue;
+                    }
+                    int count = 1;
+                    if (counts.length > 0) {
+                        try {
+                            count = Math.max(Integer.parseInt(counts[i]), 1);
+                        } catch (NumberFormatException e) {
+                            Log.e(TAG, "Bad count for " + recents[i] + ": " + counts[i]);
+                        }
+                    }
+                    mEntries.add(new Entry(recents[i], count));
+                }
+                trim();
+            }
+
+            if (DEBUG) {
+                Log.d(TAG, "Loaded " + mEntries.size() + " recent time zones");
+            }
+            mLoaded = true;
+            mVersion++;
+            notifyAll();
+            onLoaded = mOnLoaded;
+            mOnLoaded = new ArrayList<Runnable>();
+        }
+
+        for (Runnable r : onLoaded) {
+            mHandler.post(r);
+        }
+    }
+
+    private void write() {
+        StringBuilder recents = new StringBuilder();
+        StringBuilder counts = new StringBuilder();
+        synchronized (this) {
+            mWriteScheduled = false;
+            for (int i = mEntries.size() - 1; i >= 0; i--) {
+                recents.append(mEntries.get(i).id);
+                counts.append(mEntries.get(i).count);
+                if (i > 0) {
+                    recents.append(RECENT_TIMEZONES_DELIMITER);
+                    counts.append(RECENT_TIMEZONES_DELIMITER);
+                }
+            }
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Saving recent time zones: " + recents);
+        }
+        mContext.getSharedPreferences(SHARED_PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(KEY_RECENT_TIMEZONES, recents.toString())
+                .putString(KEY_RECENT_TIMEZONE_COUNTS, counts.toString())
+                .apply();
+    }
+
+    private int indexOf(String id) {
+        for (int i = 0; i < mEntries.size(); i++) {
+            if (mEntries.get(i).id.equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that threads add to without contending with each other, for
+ * statistics on hot paths. Each thread adds to one of a few cells, picked by
+ * its id, and reading sums the cells. Cells are spread over separate cache
+ * lines.
+ *
+ * LongAdder does the same but needs API 24.
+ */
+class StripedCounter {
+    private static final int STRIPES = 8;
+    /** 8 longs, a 64 byte cache line, between cells */
+    private static final int CELL_STRIDE = 8;
+
+    private final AtomicLongArray mCells = new AtomicLongArray(STRIPES * CELL_STRIDE);
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long delta) {
+        final int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+        mCells.addAndGet(stripe * CELL_STRIDE, delta);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += mCells.get(i * CELL_STRIDE);
+        }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            mCells.set(i * CELL_STRIDE, 0);
+        }
+    }
+}
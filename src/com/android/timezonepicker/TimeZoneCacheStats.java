@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+/**
+ * A snapshot of how well the formatting caches of {@link TimeZoneInfo} work.
+ * Get one with {@link TimeZoneInfo#getCacheStats}.
+ */
+public final class TimeZoneCacheStats {
+    /** The GMT offset labels shared by all time zones, cleared every minute */
+    public static final int CACHE_GMT_DISPLAY_NAME = 0;
+    /** The local times of each time zone, cleared when the reference time changes */
+    public static final int CACHE_LOCAL_TIME = 1;
+
+    static final int CACHE_COUNT = 2;
+
+    private final long[] mHits = new long[CACHE_COUNT];
+    private final long[] mMisses = new long[CACHE_COUNT];
+    private final long[] mEvictions = new long[CACHE_COUNT];
+    private final long[] mClears = new long[CACHE_COUNT];
+    private final long[] mMissNanos = new long[CACHE_COUNT];
+
+    private TimeZoneCacheStats(Recorder[] recorders) {
+        for (int i = 0; i < CACHE_COUNT; i++) {
+            mHits[i] = recorders[i].mHits.sum();
+            mMisses[i] = recorders[i].mMisses.sum();
+            mEvictions[i] = recorders[i].mEvictions.sum();
+            mClears[i] = recorders[i].mClears.sum();
+            mMissNanos[i] = recorders[i].mMissNanos.sum();
+        }
+    }
+
+    public long getHits(int cache) {
+        return mHits[cache];
+    }
+
+    public long getMisses(int cache) {
+        return mMisses[cache];
+    }
+
+    /**
+     * @return how many entries were dropped when the cache was cleared
+     */
+    public long getEvictions(int cache) {
+        return mEvictions[cache];
+    }
+
+    public long getClears(int cache) {
+        return mClears[cache];
+    }
+
+    /**
+     * @return the time spent formatting on misses, in nanoseconds
+     */
+    public long getMissNanos(int cache) {
+        return mMissNanos[cache];
+    }
+
+    /**
+     * @return hits / (hits + misses), or 0 if the cache wasn't used
+     */
+    public double getHitRate(int cache) {
+        final long lookups = mHits[cache] + mMisses[cache];
+        return lookups == 0 ? 0 : (double) mHits[cache] / lookups;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < CACHE_COUNT; i++) {
+            sb.append(i == CACHE_GMT_DISPLAY_NAME ? "gmtDisplayName" : "localTime");
+            sb.append(" hits=").append(mHits[i]);
+            sb.append(" misses=").append(mMisses[i]);
+            sb.append(" evictions=").append(mEvictions[i]);
+            sb.append(" clears=").append(mClears[i]);
+            sb.append(" missTime=").append(mMissNanos[i] / 1000).append("us\n");
+        }
+        return sb.toString();
+    }
+
+    static TimeZoneCacheStats snapshot(Recorder[] recorders) {
+        return new TimeZoneCacheStats(recorders);
+    }
+
+    /** Counters of one cache */
+    static class Recorder {
+        final StripedCounter mHits = new StripedCounter();
+        final StripedCounter mMisses = new StripedCounter();
+        final StripedCounter mEvictions = new StripedCounter();
+        final StripedCounter mClears = new StripedCounter();
+        final StripedCounter mMissNanos = new StripedCounter();
+
+        void recordClear(int size) {
+            mClears.increment();
+            mEvictions.add(size);
+        }
+
+        void recordMiss(long nanos) {
+            mMisses.increment();
+            mMissNanos.add(nanos);
+        }
+
+        void reset() {
+            mHits.reset();
+            mMisses.reset();
+            mEvictions.reset();
+            mClears.reset();
+            mMissNanos.reset();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rebuilds a catalog that was opened for the device's time zone when the
+ * device moves to another time zone while the picker is open.
+ *
+ * The tz database itself can't change under a running app: updates to it,
+ * e.g. from a mainline module, are only applied at the next boot, and every
+ * process reads the catalog afresh.
+ *
+ * While {@link #register registered}, a time zone change broadcast rebuilds
+ * the catalog, with the new zone as its default, on a background thread,
+ * along with its search indices. The new catalog is handed to the listener
+ * on the main thread. The current catalog is never modified, so readers keep
+ * a consistent catalog until they switch. Catalogs opened for another time
+ * zone, e.g. the one of an event, are left alone.
+ */
+public class TimeZoneCatalogReloader {
+    private static final String TAG = "TimeZoneCatalogReloader";
+    private static final boolean DEBUG = false;
+
+    /** The new time zone id in ACTION_TIMEZONE_CHANGED, Intent.EXTRA_TIMEZONE from R on */
+    static final String EXTRA_TIMEZONE = "time-zone";
+
+    public interface Listener {
+        /**
+         * Called on the main thread with the rebuilt catalog.
+         */
+        void onCatalogReloaded(TimeZoneQueryEngine engine);
+    }
+
+    private final Context mContext;
+    private final Listener mListener;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /** Bumped by every change, so only the result of the latest is published */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private volatile TimeZoneQueryEngine mEngine;
+    /** The device's time zone as last seen. Only used on the main thread. */
+    private String mDeviceTimeZoneId;
+    private boolean mRegistered;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String timeZoneId = intent.getStringExtra(EXTRA_TIMEZONE);
+            if (DEBUG) {
+                Log.d(TAG, "Received " + intent.getAction() + " " + timeZoneId);
+            }
+            if (timeZoneId != null) {
+                onDeviceTimeZoneChanged(timeZoneId);
+            }
+        }
+    };
+
+    public TimeZoneCatalogReloader(Context context, TimeZoneQueryEngine engine, Listener l) {
+        mContext = context.getApplicationContext();
+        mEngine = engine;
+        mDeviceTimeZoneId = TimeZone.getDefault().getID();
+        mListener = l;
+    }
+
+    /**
+     * @return the catalog that was last published, or the initial one
+     */
+    public TimeZoneQueryEngine getEngine() {
+        return mEngine;
+    }
+
+    /**
+     * Starts listening for time zone changes. Call on the main thread, e.g.
+     * when the picker is attached to its window.
+     */
+    public void register() {
+        if (mRegistered) {
+            return;
+        }
+        mContext.registerReceiver(mReceiver, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+        mRegistered = true;
+    }
+
+    /**
+     * Stops listening and drops reloads that are in progress. Call on the
+     * main thread.
+     */
+    public void unregister() {
+        cancel();
+        if (mRegistered) {
+            mContext.unregisterReceiver(mReceiver);
+            mRegistered = false;
+        }
+    }
+
+    /**
+     * Stops publishing reloads that are in progress.
+     */
+    public void cancel() {
+        mGeneration.incrementAndGet();
+    }
+
+    /**
+     * Reloads the catalog in the background if it follows the device's time
+     * zone. Call on the main thread.
+     */
+    void onDeviceTimeZoneChanged(String timeZoneId) {
+        final String oldTimeZoneId = mDeviceTimeZoneId;
+        mDeviceTimeZoneId = timeZoneId;
+        final TimeZoneQueryEngine current = mEngine;
+        if (!followsDeviceTimeZone(current.getTimeZoneData(), oldTimeZoneId, timeZoneId)) {
+            return;
+        }
+
+        final int generation = mGeneration.incrementAndGet();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final TimeZoneQueryEngine engine = reload(mContext, current, timeZoneId);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration.get()) {
+                            return;
+                        }
+                        mEngine = engine;
+                        mListener.onCatalogReloaded(engine);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return whether a catalog whose default is the device's old time zone
+     *         should move to the new one
+     */
+    static boolean followsDeviceTimeZone(TimeZoneData tzd, String oldTimeZoneId,
+            String timeZoneId) {
+        return oldTimeZoneId != null && oldTimeZoneId.equals(tzd.mDefaultTimeZoneId)
+                && !timeZoneId.equals(oldTimeZoneId);
+    }
+
+    /**
+     * Builds current's catalog again, at the same time, for another default
+     * time zone, along with its search indices. Slow, call on a background
+     * thread.
+     */
+    static TimeZoneQueryEngine reload(Context context, TimeZoneQueryEngine current,
+            String timeZoneId) {
+        final TimeZoneData old = current.getTimeZoneData();
+        TimeZoneData tzd = new TimeZoneData(context, timeZoneId, old.getTime());
+        TimeZoneQueryEngine engine = new TimeZoneQueryEngine(tzd);
+        tzd.getFuzzyIndex();
+        tzd.getLocalTimeIndex();
+        Log.i(TAG, "Reloaded time zones for " + timeZoneId);
+        return engine;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.text.format.DateUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of a {@link TimeZoneData} that queries read: the time zones in
+ * catalog order and the indices over them, all consistent with each other.
+ *
+ * A snapshot never changes. TimeZoneData publishes a new one when something
+ * changes, so a query that takes the current snapshot once can run on any
+ * thread without locking and without seeing a mix of old and new state.
+ */
+final class TimeZoneCatalogSnapshot {
+    /** Offset of hour 0 in mTimeZonesByOffset */
+    private static final int OFFSET_ARRAY_OFFSET = 20;
+    private static final int OFFSET_ARRAY_SIZE = 40;
+
+    final List<TimeZoneInfo> timeZones;
+    /** Country display name -> catalog indices, in catalog order */
+    final Map<String, List<Integer>> timeZonesByCountry;
+    final TimeZoneSearchKeys searchKeys;
+    /** Catalog index of the default time zone, or -1 */
+    final int defaultIndex;
+    /** The time the display names are for */
+    final long timeMillis;
+
+    /** Catalog indices by whole hour of the GMT offset at timeMillis */
+    private final List<Integer>[] mTimeZonesByOffset;
+
+    TimeZoneCatalogSnapshot(ArrayList<TimeZoneInfo> timeZones,
+            LinkedHashMap<String, ArrayList<Integer>> timeZonesByCountry,
+            TimeZoneSearchKeys searchKeys, int defaultIndex, long timeMillis) {
+        this.timeZones = Collections.unmodifiableList(new ArrayList<TimeZoneInfo>(timeZones));
+
+        LinkedHashMap<String, List<Integer>> byCountry =
+                new LinkedHashMap<String, List<Integer>>(timeZonesByCountry.size() * 2);
+        for (Map.Entry<String, ArrayList<Integer>> entry : timeZonesByCountry.entrySet()) {
+            byCountry.put(entry.getKey(), Collections.unmodifiableList(
+                    new ArrayList<Integer>(entry.getValue())));
+        }
+        this.timeZonesByCountry = Collections.unmodifiableMap(byCountry);
+
+        mTimeZonesByOffset = groupByOffset(this.timeZones, timeMillis);
+        this.searchKeys = searchKeys;
+        this.defaultIndex = defaultIndex;
+        this.timeMillis = timeMillis;
+    }
+
+    private TimeZoneCatalogSnapshot(TimeZoneCatalogSnapshot other, long timeMillis) {
+        timeZones = other.timeZones;
+        timeZonesByCountry = other.timeZonesByCountry;
+        mTimeZonesByOffset = groupByOffset(timeZones, timeMillis);
+        searchKeys = other.searchKeys;
+        defaultIndex = other.defaultIndex;
+        this.timeMillis = timeMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Integer>[] groupByOffset(List<TimeZoneInfo> timeZones,
+            long timeMillis) {
+        ArrayList<Integer>[] groups = new ArrayList[OFFSET_ARRAY_SIZE];
+        for (int i = 0; i < timeZones.size(); i++) {
+            int offsetMillis = timeZones.get(i).mTz.getOffset(timeMillis);
+            int index = OFFSET_ARRAY_OFFSET + (int) (offsetMillis / DateUtils.HOUR_IN_MILLIS);
+            if (index < 0 || index >= OFFSET_ARRAY_SIZE) {
+                continue;
+            }
+            if (groups[index] == null) {
+                groups[index] = new ArrayList<Integer>();
+            }
+            groups[index].add(i);
+        }
+
+        List<Integer>[] byOffset = new List[OFFSET_ARRAY_SIZE];
+        for (int i = 0; i < OFFSET_ARRAY_SIZE; i++) {
+            if (groups[i] != null) {
+                byOffset[i] = Collections.unmodifiableList(groups[i]);
+            }
+        }
+        return byOffset;
+    }
+
+    /**
+     * @return a snapshot like this one for another time. The catalog is
+     *         shared; the offset groups are rebuilt for the new time.
+     */
+    TimeZoneCatalogSnapshot withTime(long timeMillis) {
+        return new TimeZoneCatalogSnapshot(this, timeMillis);
+    }
+
+    int size() {
+        return timeZones.size();
+    }
+
+    TimeZoneInfo get(int index) {
+        return timeZones.get(index);
+    }
+
+    boolean hasTimeZonesInHrOffset(int offsetHr) {
+        return getTimeZonesByOffset(offsetHr) != null;
+    }
+
+    /**
+     * @return catalog indices in catalog order, or null if there are none
+     */
+    List<Integer> getTimeZonesByOffset(int offsetHr) {
+        int index = OFFSET_ARRAY_OFFSET + offsetHr;
+        if (index >= OFFSET_ARRAY_SIZE || index < 0) {
+            return null;
+        }
+        return mTimeZonesByOffset[index];
+    }
+}
@@ -17,37 +17,46 @@
 package com.android.timezonepicker;
 
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.AssetManager;
 import android.content.res.Resources;
+import android.os.AsyncTask;
+import android.os.Build;
 import android.text.format.DateFormat;
-import android.text.format.DateUtils;
 import android.util.Log;
-import android.util.SparseArray;
 
-import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 public class TimeZoneData {
     private static final String TAG = "TimeZoneData";
     private static final boolean DEBUG = false;
-    private static final int OFFSET_ARRAY_OFFSET = 20;
 
-    private static final String PALESTINE_COUNTRY_CODE = "PS";
+    /**
+     * How far, in minutes, the local time of a zone may be from a searched
+     * time that has minutes, e.g. "15:30".
+     */
+    private static final int LOCAL_TIME_TOLERANCE_MINUTES = 15;
 
 
-    ArrayList<TimeZoneInfo> mTimeZones;
-    LinkedHashMap<String, ArrayList<Integer>> mTimeZonesByCountry;
-    HashSet<String> mTimeZoneNames = new HashSet<String>();
+    /** The catalog being built. Only set while loading; queries read mSnapshot. */
+    private ArrayList<TimeZoneInfo> mTimeZones;
 
     private long mTimeMillis;
     private HashMap<String, String> mCountryCodeToNameMap = new HashMap<String, String>();
@@ -58,10 +67,38 @@ public class TimeZoneData {
     private String mAlternateDefaultTimeZoneId;
     private String mDefaultTimeZoneCountry;
     private HashMap<String, TimeZoneInfo> mTimeZonesById;
-    private boolean[] mHasTimeZonesInHrOffset = new boolean[40];
-    SparseArray<ArrayList<Integer>> mTimeZonesByOffsets;
+
+    /** Old tz id -> new tz id, from the 'backward' file */
+    private HashMap<String, String> mTimeZoneAliases = new HashMap<String, String>();
+    /** Tz id -> the time zone with the same rules in the same country that was kept */
+    private HashMap<String, TimeZoneInfo> mDroppedTimeZones = new HashMap<String, TimeZoneInfo>();
+    /** Catalog ids, aliases and dropped ids -> catalog index */
+    private HashMap<String, Integer> mCanonicalIndices;
+    /** Ids that are resolved by their rules, see {@link #resolveByRules} */
+    private final ConcurrentHashMap<String, Integer> mResolvedByRules =
+            new ConcurrentHashMap<String, Integer>();
     private Context mContext;
-    private String mPalestineDisplayName;
+    private CountryNameTable mCountryNameTable;
+    TimeZoneSearchKeys mSearchKeys;
+    /** What queries read. Replaced, never modified, after loading. */
+    private volatile TimeZoneCatalogSnapshot mSnapshot;
+    private TimeZoneFuzzyIndex mFuzzyIndex;
+    private TimeZoneLocalTimeIndex mLocalTimeIndex;
+    private TimeZoneLocationIndex mLocationIndex;
+
+    /** Tz id -> latitude and longitude of its principal city, from zone.tab */
+    private LinkedHashMap<String, float[]> mZoneCoordinates =
+            new LinkedHashMap<String, float[]>();
+
+    /** The locale of mDisplayName, mCountry and the search indices */
+    private Locale mLocale;
+    /** Names in other locales, built on demand */
+    private final ConcurrentHashMap<Locale, FutureTask<TimeZoneLocaleLayer>> mLocaleLayers =
+            new ConcurrentHashMap<Locale, FutureTask<TimeZoneLocaleLayer>>();
+
+    private static volatile TimeZoneLoadMetrics.Listener sLoadMetricsListener;
+    /** Only set while loading */
+    private TimeZoneLoadMetrics.Recorder mLoadRecorder;
 
     public TimeZoneData(Context context, String defaultTimeZoneId, long timeMillis) {
         mContext = context;
@@ -75,11 +112,19 @@ public class TimeZoneData {
             mTimeMillis = timeMillis;
         }
 
-        mPalestineDisplayName = context.getResources().getString(R.string.palestine_display_name);
-
+        mLoadRecorder = new TimeZoneLoadMetrics.Recorder();
         loadTzs(context);
+        TimeZoneLoadMetrics metrics = mLoadRecorder.finish(mSnapshot.size());
+        mLoadRecorder = null;
 
         Log.i(TAG, "Time to load time zones (ms): " + (System.currentTimeMillis() - now));
+        if (DEBUG) {
+            Log.d(TAG, "Load metrics: " + metrics);
+        }
+        TimeZoneLoadMetrics.Listener listener = sLoadMetricsListener;
+        if (listener != null) {
+            listener.onTimeZonesLoaded(metrics);
+        }
 
         // now = System.currentTimeMillis();
         // printTz();
@@ -87,37 +132,164 @@ public class TimeZoneData {
         // (System.currentTimeMillis() - now));
     }
 
-    public void setTime(long timeMillis) {
+    /**
+     * Sets a listener that receives the load metrics of every TimeZoneData
+     * created from now on, e.g. to report startup breakdowns.
+     *
+     * @param listener the listener, or null to stop reporting
+     */
+    public static void setLoadMetricsListener(TimeZoneLoadMetrics.Listener listener) {
+        sLoadMetricsListener = listener;
+    }
+
+    public synchronized void setTime(long timeMillis) {
         mTimeMillis = timeMillis;
+        mSnapshot = mSnapshot.withTime(timeMillis);
+    }
+
+    long getTime() {
+        return mSnapshot.timeMillis;
+    }
+
+    /**
+     * Returns the catalog as it is now. Queries that read more than one thing
+     * from the catalog should take one snapshot and read everything from it.
+     */
+    TimeZoneCatalogSnapshot getSnapshot() {
+        return mSnapshot;
     }
 
     public TimeZoneInfo get(int position) {
-        return mTimeZones.get(position);
+        return mSnapshot.get(position);
     }
 
     public int size() {
-        return mTimeZones.size();
+        return mSnapshot.size();
     }
 
     public int getDefaultTimeZoneIndex() {
-        return mTimeZones.indexOf(mDefaultTimeZoneInfo);
+        return mSnapshot.defaultIndex;
+    }
+
+    /**
+     * @return the display name of the country of the default time zone, or
+     *         null
+     */
+    String getDefaultTimeZoneCountry() {
+        return mDefaultTimeZoneCountry;
+    }
+
+    /**
+     * @return the display name of the country, or null if it has no time
+     *         zones
+     */
+    String getCountryName(String countryCode) {
+        return mCountryCodeToNameMap.get(countryCode);
     }
 
-    // TODO speed this up
     public int findIndexByTimeZoneIdSlow(String timeZoneId) {
-        int idx = 0;
-        for (TimeZoneInfo tzi : mTimeZones) {
-            if (timeZoneId.equals(tzi.mTzId)) {
-                return idx;
+        TimeZoneInfo tzi = mTimeZonesById.get(timeZoneId);
+        if (tzi == null) {
+            return -1;
+        }
+        Integer index = mCanonicalIndices.get(tzi.mTzId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Resolves many time zone ids at once, e.g. for events being imported.
+     * Legacy ids from the 'backward' file and ids that were dropped because
+     * another zone in the same country has the same rules resolve to the zone
+     * kept in the catalog. Other ids resolve to a catalog zone with the same
+     * rules, which is worked out once per id.
+     *
+     * @param ids the time zone ids. May contain nulls and repeated ids.
+     * @param outDisplayNames if not null, receives the display name of each
+     *            resolved zone, or null. Must be at least as long as ids.
+     * @return the catalog index of each id, or -1 if it could not be resolved
+     */
+    public int[] resolveTimeZoneIds(String[] ids, String[] outDisplayNames) {
+        final TimeZoneCatalogSnapshot snapshot = mSnapshot;
+        final int[] indices = new int[ids.length];
+        String lastId = null;
+        int lastIndex = -1;
+        for (int i = 0; i < ids.length; i++) {
+            final String id = ids[i];
+            int index;
+            if (id == null) {
+                index = -1;
+            } else if (id.equals(lastId)) {
+                // Events are often grouped by time zone
+                index = lastIndex;
+            } else {
+                Integer canonical = mCanonicalIndices.get(id);
+                index = canonical != null ? canonical : resolveByRules(id);
+                lastId = id;
+                lastIndex = index;
+            }
+
+            indices[i] = index;
+            if (outDisplayNames != null) {
+                outDisplayNames[i] = index == -1 ? null : snapshot.get(index).mDisplayName;
             }
-            idx++;
         }
-        return -1;
+        return indices;
+    }
+
+    public int[] resolveTimeZoneIds(String[] ids) {
+        return resolveTimeZoneIds(ids, null);
+    }
+
+    /**
+     * Resolves an id that isn't in the catalog to a catalog zone with the
+     * same rules, preferring one with the same id after following aliases.
+     * Results, including failures, are remembered.
+     */
+    private int resolveByRules(String id) {
+        Integer cached = mResolvedByRules.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        int index = -1;
+        String canonicalId = id;
+        while (mTimeZoneAliases.containsKey(canonicalId)
+                && !canonicalId.equals(mTimeZoneAliases.get(canonicalId))) {
+            canonicalId = mTimeZoneAliases.get(canonicalId);
+            Integer canonical = mCanonicalIndices.get(canonicalId);
+            if (canonical != null) {
+                index = canonical;
+                break;
+            }
+        }
+
+        if (index == -1) {
+            TimeZone tz = TimeZone.getTimeZone(canonicalId);
+            // getTimeZone() falls back to GMT for unknown ids
+            if (tz != null && tz.getID().equals(canonicalId)) {
+                final TimeZoneCatalogSnapshot snapshot = mSnapshot;
+                final int size = snapshot.size();
+                for (int i = 0; i < size; i++) {
+                    if (snapshot.get(i).mTz.hasSameRules(tz)) {
+                        index = i;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Resolved " + id + " by rules to " + index);
+        }
+        mResolvedByRules.put(id, index);
+        return index;
     }
 
-    void loadTzs(Context context) {
+    private void loadTzs(Context context) {
         mTimeZones = new ArrayList<TimeZoneInfo>();
         HashSet<String> processedTimeZones = loadTzsInZoneTab(context);
+
+        beginPhase(TimeZoneLoadMetrics.PHASE_AVAILABLE_IDS);
         String[] tzIds = TimeZone.getAvailableIDs();
 
         if (DEBUG) {
@@ -145,13 +317,21 @@ public class TimeZoneData {
             }
 
             TimeZoneInfo tzInfo = new TimeZoneInfo(tz, null);
+            if (mLoadRecorder != null) {
+                mLoadRecorder.mZonesProcessed++;
+            }
 
-            if (getIdenticalTimeZoneInTheCountry(tzInfo) == -1) {
+            int identicalTzIdx = getIdenticalTimeZoneInTheCountry(tzInfo);
+            if (identicalTzIdx == -1) {
                 if (DEBUG) {
                     Log.e(TAG, "# Adding time zone from getAvailId: " + tzInfo.toString());
                 }
                 mTimeZones.add(tzInfo);
             } else {
+                mDroppedTimeZones.put(tzId, mTimeZones.get(identicalTzIdx));
+                if (mLoadRecorder != null) {
+                    mLoadRecorder.mZonesDropped++;
+                }
                 if (DEBUG) {
                     Log.e(TAG,
                             "# Dropping identical time zone from getAvailId: " + tzInfo.toString());
@@ -174,21 +354,52 @@ public class TimeZoneData {
             // }
         }
 
+        endPhase(TimeZoneLoadMetrics.PHASE_AVAILABLE_IDS);
+
         // Don't change the order of mTimeZones after this sort
+        beginPhase(TimeZoneLoadMetrics.PHASE_SORT);
         Collections.sort(mTimeZones);
+        endPhase(TimeZoneLoadMetrics.PHASE_SORT);
+
+        beginPhase(TimeZoneLoadMetrics.PHASE_ID_INDEX);
 
-        mTimeZonesByCountry = new LinkedHashMap<String, ArrayList<Integer>>();
-        mTimeZonesByOffsets = new SparseArray<ArrayList<Integer>>(mHasTimeZonesInHrOffset.length);
+        LinkedHashMap<String, ArrayList<Integer>> timeZonesByCountry =
+                new LinkedHashMap<String, ArrayList<Integer>>();
         mTimeZonesById = new HashMap<String, TimeZoneInfo>(mTimeZones.size());
+        mCanonicalIndices = new HashMap<String, Integer>(
+                mTimeZones.size() + mTimeZoneAliases.size() + mDroppedTimeZones.size());
+        int index = 0;
         for (TimeZoneInfo tz : mTimeZones) {
             // /////////////////////
             // Lookup map for id -> tz
             mTimeZonesById.put(tz.mTzId, tz);
+            mCanonicalIndices.put(tz.mTzId, index++);
+        }
+
+        // /////////////////////
+        // Ids that aren't in the catalog but resolve to a zone that is
+        for (Map.Entry<String, TimeZoneInfo> dropped : mDroppedTimeZones.entrySet()) {
+            if (!mCanonicalIndices.containsKey(dropped.getKey())) {
+                mCanonicalIndices.put(dropped.getKey(),
+                        mCanonicalIndices.get(dropped.getValue().mTzId));
+            }
         }
+        for (Map.Entry<String, String> alias : mTimeZoneAliases.entrySet()) {
+            Integer target = mCanonicalIndices.get(alias.getValue());
+            if (target != null && !mCanonicalIndices.containsKey(alias.getKey())) {
+                mCanonicalIndices.put(alias.getKey(), target);
+            }
+        }
+        endPhase(TimeZoneLoadMetrics.PHASE_ID_INDEX);
+
+        beginPhase(TimeZoneLoadMetrics.PHASE_DISPLAY_NAME_OVERRIDES);
         populateDisplayNameOverrides(mContext.getResources());
+        endPhase(TimeZoneLoadMetrics.PHASE_DISPLAY_NAME_OVERRIDES);
 
+        beginPhase(TimeZoneLoadMetrics.PHASE_INDEX);
         Date date = new Date(mTimeMillis);
         Locale defaultLocal = Locale.getDefault();
+        mLocale = defaultLocal;
 
         int idx = 0;
         for (TimeZoneInfo tz : mTimeZones) {
@@ -201,36 +412,37 @@ public class TimeZoneData {
 
             // /////////////////////
             // Grouping tz's by country for search by country
-            ArrayList<Integer> group = mTimeZonesByCountry.get(tz.mCountry);
+            ArrayList<Integer> group = timeZonesByCountry.get(tz.mCountry);
             if (group == null) {
                 group = new ArrayList<Integer>();
-                mTimeZonesByCountry.put(tz.mCountry, group);
+                timeZonesByCountry.put(tz.mCountry, group);
             }
 
             group.add(idx);
 
-            // /////////////////////
-            // Grouping tz's by GMT offsets
-            indexByOffsets(idx, tz);
-
-            // Skip all the GMT+xx:xx style display names from search
-            if (!tz.mDisplayName.endsWith(":00")) {
-                mTimeZoneNames.add(tz.mDisplayName);
-            } else if (DEBUG) {
-                Log.e(TAG, "# Hiding from pretty name search: " +
-                        tz.mDisplayName);
-            }
-
             idx++;
         }
+        endPhase(TimeZoneLoadMetrics.PHASE_INDEX);
+
+        // /////////////////////
+        // Precompute search keys so that filtering doesn't need to fold case,
+        // strip accents or collate on every keystroke
+        beginPhase(TimeZoneLoadMetrics.PHASE_SEARCH_KEYS);
+        mSearchKeys = new TimeZoneSearchKeys(timeZonesByCountry.keySet(), defaultLocal);
+        endPhase(TimeZoneLoadMetrics.PHASE_SEARCH_KEYS);
+
+        // The offset groups are built by the snapshot, for its time
+        mSnapshot = new TimeZoneCatalogSnapshot(mTimeZones, timeZonesByCountry, mSearchKeys,
+                mTimeZones.indexOf(mDefaultTimeZoneInfo), mTimeMillis);
 
         // printTimeZones();
+        mTimeZones = null;
     }
 
     private void printTimeZones() {
         TimeZoneInfo last = null;
         boolean first = true;
-        for (TimeZoneInfo tz : mTimeZones) {
+        for (TimeZoneInfo tz : mSnapshot.timeZones) {
             // All
             if (false) {
                 Log.e("ALL", tz.toString());
@@ -258,7 +470,7 @@ public class TimeZoneData {
             }
             last = tz;
         }
-        Log.e(TAG, "Total number of tz's = " + mTimeZones.size());
+        Log.e(TAG, "Total number of tz's = " + mSnapshot.size());
     }
 
     private void populateDisplayNameOverrides(Resources resources) {
@@ -282,33 +494,267 @@ public class TimeZoneData {
         }
     }
 
+    /**
+     * @return the locale the catalog was loaded in. The display names and
+     *         country names of the time zones, the search and the order of
+     *         the catalog are in this locale.
+     */
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * Returns the names of the time zones and countries of this catalog in
+     * another locale, e.g. to show times in several languages. The catalog is
+     * shared, only the names are looked up, once per locale. Several locales
+     * can be looked up on different threads at the same time.
+     *
+     * Blocks while the names are looked up. Call {@link #prefetchLocaleLayer}
+     * beforehand to avoid that. If looking up fails, the next call tries
+     * again.
+     */
+    public TimeZoneLocaleLayer getLocaleLayer(Locale locale) {
+        FutureTask<TimeZoneLocaleLayer> task = getLocaleLayerTask(locale);
+        // Runs it on this thread unless it's running or done already
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted loading names for " + locale, e);
+        } catch (ExecutionException e) {
+            // Also done by the task itself, but maybe not yet
+            mLocaleLayers.remove(locale, task);
+            throw new RuntimeException("Failed to load names for " + locale, e.getCause());
+        }
+    }
+
+    /**
+     * Starts looking up the names in the given locale in the background.
+     */
+    public void prefetchLocaleLayer(Locale locale) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(getLocaleLayerTask(locale));
+    }
+
+    private FutureTask<TimeZoneLocaleLayer> getLocaleLayerTask(final Locale locale) {
+        FutureTask<TimeZoneLocaleLayer> task = mLocaleLayers.get(locale);
+        if (task != null) {
+            return task;
+        }
+
+        if (locale.equals(mLocale)) {
+            // The names loaded with the catalog
+            final TimeZoneCatalogSnapshot snapshot = mSnapshot;
+            final int size = snapshot.size();
+            final String[] displayNames = new String[size];
+            final String[] countryNames = new String[size];
+            for (int i = 0; i < size; i++) {
+                displayNames[i] = snapshot.get(i).mDisplayName;
+                countryNames[i] = snapshot.get(i).mCountry;
+            }
+            task = newLocaleLayerTask(locale, new Callable<TimeZoneLocaleLayer>() {
+                @Override
+                public TimeZoneLocaleLayer call() {
+                    return new TimeZoneLocaleLayer(locale, displayNames, countryNames,
+                            new HashMap<String, String>(mCountryCodeToNameMap));
+                }
+            });
+        } else {
+            task = newLocaleLayerTask(locale, new Callable<TimeZoneLocaleLayer>() {
+                @Override
+                public TimeZoneLocaleLayer call() {
+                    return TimeZoneLocaleLayer.build(TimeZoneData.this,
+                            getLocalizedResources(locale), locale);
+                }
+            });
+        }
+
+        FutureTask<TimeZoneLocaleLayer> raced = mLocaleLayers.putIfAbsent(locale, task);
+        return raced != null ? raced : task;
+    }
+
+    /**
+     * @return a task that removes itself from mLocaleLayers if it fails, so
+     *         that the next request for the locale tries again
+     */
+    private FutureTask<TimeZoneLocaleLayer> newLocaleLayerTask(final Locale locale,
+            Callable<TimeZoneLocaleLayer> callable) {
+        return new FutureTask<TimeZoneLocaleLayer>(callable) {
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Failed to load names for " + locale, e.getCause());
+                    mLocaleLayers.remove(locale, this);
+                } catch (InterruptedException e) {
+                    // Can't happen, the task is done
+                    Thread.currentThread().interrupt();
+                } catch (CancellationException e) {
+                    mLocaleLayers.remove(locale, this);
+                }
+            }
+        };
+    }
+
+    private Resources getLocalizedResources(Locale locale) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            // The overridden names stay in the current locale
+            return mContext.getResources();
+        }
+        Configuration config = new Configuration(mContext.getResources().getConfiguration());
+        config.setLocale(locale);
+        return mContext.createConfigurationContext(config).getResources();
+    }
+
     public boolean hasTimeZonesInHrOffset(int offsetHr) {
-        int index = OFFSET_ARRAY_OFFSET + offsetHr;
-        if (index >= mHasTimeZonesInHrOffset.length || index < 0) {
-            return false;
+        return mSnapshot.hasTimeZonesInHrOffset(offsetHr);
+    }
+
+    /**
+     * Returns the index used for typo-tolerant search. It is built on first
+     * use, normally on the filter thread, so that loading the picker doesn't
+     * pay for it.
+     */
+    synchronized TimeZoneFuzzyIndex getFuzzyIndex() {
+        if (mFuzzyIndex == null) {
+            long now = System.currentTimeMillis();
+            mFuzzyIndex = new TimeZoneFuzzyIndex(this);
+            if (DEBUG) {
+                Log.d(TAG, "Time to build fuzzy index (ms): "
+                        + (System.currentTimeMillis() - now));
+            }
         }
-        return mHasTimeZonesInHrOffset[index];
+        return mFuzzyIndex;
     }
 
-    private void indexByOffsets(int idx, TimeZoneInfo tzi) {
-        int offsetMillis = tzi.getNowOffsetMillis();
-        int index = OFFSET_ARRAY_OFFSET + (int) (offsetMillis / DateUtils.HOUR_IN_MILLIS);
-        mHasTimeZonesInHrOffset[index] = true;
+    synchronized TimeZoneLocalTimeIndex getLocalTimeIndex() {
+        if (mLocalTimeIndex == null) {
+            mLocalTimeIndex = new TimeZoneLocalTimeIndex(this, getTime());
+        }
+        return mLocalTimeIndex;
+    }
 
-        ArrayList<Integer> group = mTimeZonesByOffsets.get(index);
-        if (group == null) {
-            group = new ArrayList<Integer>();
-            mTimeZonesByOffsets.put(index, group);
+    /**
+     * Returns the index of principal city locations, built on first use.
+     */
+    synchronized TimeZoneLocationIndex getLocationIndex() {
+        if (mLocationIndex == null) {
+            final int size = mZoneCoordinates.size();
+            float[] latitudes = new float[size];
+            float[] longitudes = new float[size];
+            int[] indices = new int[size];
+            int count = 0;
+            for (Map.Entry<String, float[]> entry : mZoneCoordinates.entrySet()) {
+                // Dropped zones count as the zone with the same rules
+                Integer index = mCanonicalIndices.get(entry.getKey());
+                if (index != null) {
+                    latitudes[count] = entry.getValue()[0];
+                    longitudes[count] = entry.getValue()[1];
+                    indices[count++] = index;
+                }
+            }
+            mLocationIndex = new TimeZoneLocationIndex(latitudes, longitudes, indices, count);
         }
-        group.add(idx);
+        return mLocationIndex;
     }
 
-    public ArrayList<Integer> getTimeZonesByOffset(int offsetHr) {
-        int index = OFFSET_ARRAY_OFFSET + offsetHr;
-        if (index >= mHasTimeZonesInHrOffset.length || index < 0) {
-            return null;
+    /**
+     * Returns the time zones whose principal cities, as listed in zone.tab,
+     * are nearest to the given location, nearest first. Each time zone is
+     * returned once, even if several of its cities are near.
+     *
+     * @param latitude degrees north
+     * @param longitude degrees east
+     * @param k how many time zones to return at most
+     * @return TimeZoneData indices
+     */
+    public int[] findNearestTimeZones(double latitude, double longitude, int k) {
+        return getLocationIndex().findNearest(latitude, longitude, k);
+    }
+
+    /**
+     * Fills a grid of the GMT offsets, in minutes, of the given time zones at
+     * startMillis, startMillis + stepMillis, ... The grid has a row of count
+     * cells per time zone, row after row. DST transitions within the range
+     * are taken into account.
+     *
+     * @param indices TimeZoneData indices
+     * @param out receives the grid. Must have indices.length * count cells.
+     */
+    public void getOffsetGrid(int[] indices, long startMillis, long stepMillis, int count,
+            int[] out) {
+        fillGrid(indices, startMillis, stepMillis, count, false, out);
+    }
+
+    public int[] getOffsetGrid(int[] indices, long startMillis, long stepMillis, int count) {
+        int[] out = new int[indices.length * Math.max(count, 0)];
+        fillGrid(indices, startMillis, stepMillis, count, false, out);
+        return out;
+    }
+
+    /**
+     * Like {@link #getOffsetGrid} but fills in the local minute of the day,
+     * from 0 to 1439, of each cell.
+     */
+    public void getLocalTimeGrid(int[] indices, long startMillis, long stepMillis, int count,
+            int[] out) {
+        fillGrid(indices, startMillis, stepMillis, count, true, out);
+    }
+
+    public int[] getLocalTimeGrid(int[] indices, long startMillis, long stepMillis, int count) {
+        int[] out = new int[indices.length * Math.max(count, 0)];
+        fillGrid(indices, startMillis, stepMillis, count, true, out);
+        return out;
+    }
+
+    private void fillGrid(int[] indices, long startMillis, long stepMillis, int count,
+            boolean minuteOfDay, int[] out) {
+        if (count <= 0) {
+            return;
+        }
+        if (out.length < (long) indices.length * count) {
+            throw new IllegalArgumentException("Grid needs " + (long) indices.length * count
+                    + " cells, got " + out.length);
+        }
+        final TimeZoneCatalogSnapshot snapshot = mSnapshot;
+        for (int row = 0; row < indices.length; row++) {
+            TimeZoneOffsetGrid.fill(snapshot.get(indices[row]).mTz, startMillis, stepMillis,
+                    count, minuteOfDay, out, row * count);
         }
-        return mTimeZonesByOffsets.get(index);
+    }
+
+    /**
+     * Returns the time zones whose local time at the catalog time, see
+     * {@link #setTime}, matches minuteOfDay. A whole hour, e.g. "3pm",
+     * matches the entire hour. Otherwise, e.g. "15:30", local times within
+     * {@link #LOCAL_TIME_TOLERANCE_MINUTES} match.
+     *
+     * @param minuteOfDay local time in minutes since midnight
+     * @return catalog indices in catalog order. Empty if nothing matches.
+     */
+    public ArrayList<Integer> getTimeZonesByLocalTime(int minuteOfDay) {
+        int fromMinute;
+        int toMinute;
+        if (minuteOfDay % 60 == 0) {
+            fromMinute = minuteOfDay;
+            toMinute = minuteOfDay + 60;
+        } else {
+            fromMinute = minuteOfDay - LOCAL_TIME_TOLERANCE_MINUTES;
+            toMinute = minuteOfDay + LOCAL_TIME_TOLERANCE_MINUTES + 1;
+        }
+        return getLocalTimeIndex().find(fromMinute, toMinute, getTime());
+    }
+
+    /**
+     * @return catalog indices, in catalog order, of the time zones whose
+     *         offset at the catalog time is in the given hour, or null if
+     *         there are none. A copy, so changing it doesn't change the
+     *         catalog.
+     */
+    public ArrayList<Integer> getTimeZonesByOffset(int offsetHr) {
+        List<Integer> byOffset = mSnapshot.getTimeZonesByOffset(offsetHr);
+        return byOffset == null ? null : new ArrayList<Integer>(byOffset);
     }
 
     private HashSet<String> loadTzsInZoneTab(Context context) {
@@ -320,20 +766,19 @@ public class TimeZoneData {
          * The 'backward' file contain mappings between new and old time zone
          * ids. We will explicitly ignore the old ones.
          */
+        beginPhase(TimeZoneLoadMetrics.PHASE_BACKWARD);
         try {
             is = am.open("backward");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-            String line;
+            TzDataTabReader reader = new TzDataTabReader(is);
 
-            while ((line = reader.readLine()) != null) {
-                // Skip comment lines
-                if (!line.startsWith("#") && line.length() > 0) {
+            // Comment lines are skipped
+            while (reader.nextLine()) {
+                if (reader.getFieldCount() >= 3) {
                     // 0: "Link"
                     // 1: New tz id
                     // Last: Old tz id
-                    String[] fields = line.split("\t+");
-                    String newTzId = fields[1];
-                    String oldTzId = fields[fields.length - 1];
+                    String newTzId = reader.getString(1);
+                    String oldTzId = reader.getString(reader.getFieldCount() - 1);
 
                     final TimeZone tz = TimeZone.getTimeZone(newTzId);
                     if (tz == null) {
@@ -342,6 +787,10 @@ public class TimeZoneData {
                     }
 
                     processedTimeZones.add(oldTzId);
+                    mTimeZoneAliases.put(oldTzId, newTzId);
+                    if (mLoadRecorder != null) {
+                        mLoadRecorder.mAliases++;
+                    }
 
                     if (DEBUG) {
                         Log.e(TAG, "# Dropping identical time zone from backward: " + oldTzId);
@@ -363,32 +812,54 @@ public class TimeZoneData {
             } catch (IOException ignored) {
             }
         }
+        endPhase(TimeZoneLoadMetrics.PHASE_BACKWARD);
 
         /*
          * zone.tab contains a list of time zones and country code. They are
          * "sorted first by country, then an order within the country that (1)
          * makes some geographical sense, and (2) puts the most populous zones
          * first, where that does not contradict (1)."
+         *
+         * Newer tzdata releases may only ship zone1970.tab, which has the same
+         * columns but lists all the countries of a zone, e.g. "CH,DE,LI". The
+         * first country is the one the zone is named after.
          */
+        beginPhase(TimeZoneLoadMetrics.PHASE_ZONE_TAB);
         try {
-            String lang = Locale.getDefault().getLanguage();
-            is = am.open("zone.tab");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.startsWith("#")) { // Skip comment lines
-                    // 0: country code
+            beginPhase(TimeZoneLoadMetrics.PHASE_COUNTRY_NAMES);
+            Resources res = context.getResources();
+            mCountryNameTable = CountryNameTable.get(res, res.getConfiguration().locale);
+            endPhase(TimeZoneLoadMetrics.PHASE_COUNTRY_NAMES);
+            try {
+                is = am.open("zone.tab");
+            } catch (FileNotFoundException e) {
+                is = am.open("zone1970.tab");
+            }
+            TzDataTabReader reader = new TzDataTabReader(is);
+            // Comment lines are skipped
+            while (reader.nextLine()) {
+                if (reader.getFieldCount() >= 3) {
+                    // 0: country code(s)
                     // 1: coordinates
                     // 2: time zone id
                     // 3: comments
-                    final String[] fields = line.split("\t");
-                    final String timeZoneId = fields[2];
-                    final String countryCode = fields[0];
+                    final String timeZoneId = reader.getString(2);
+                    final int countryCodeCount = reader.getCountryCodeCount(0);
+                    final float[] coordinates = new float[2];
+                    if (reader.getCoordinates(1, coordinates)) {
+                        mZoneCoordinates.put(timeZoneId, coordinates);
+                    } else {
+                        Log.e(TAG, "Bad coordinates for " + timeZoneId + ": "
+                                + reader.getString(1));
+                    }
                     final TimeZone tz = TimeZone.getTimeZone(timeZoneId);
                     if (tz == null) {
                         Log.e(TAG, "Timezone not found: " + timeZoneId);
                         continue;
                     }
+                    if (mLoadRecorder != null) {
+                        mLoadRecorder.mZonesProcessed++;
+                    }
 
                     /*
                      * Dropping non-GMT tzs without a country code. They are not
@@ -396,73 +867,29 @@ public class TimeZoneData {
                      * country codes. e.g. WET CET MST7MDT PST8PDT Asia/Khandyga
                      * Asia/Ust-Nera EST
                      */
-                    if (countryCode == null && !timeZoneId.startsWith("Etc/GMT")) {
-                        processedTimeZones.add(timeZoneId);
-                        continue;
-                    }
-
-                    // Remember the mapping between the country code and display
-                    // name
-                    String country = mCountryCodeToNameMap.get(countryCode);
-                    if (country == null) {
-                        country = getCountryNames(lang, countryCode);
-                        mCountryCodeToNameMap.put(countryCode, country);
-                    }
-
-                    // TODO Don't like this here but need to get the country of
-                    // the default tz.
-
-                    // Find the country of the default tz
-                    if (mDefaultTimeZoneId != null && mDefaultTimeZoneCountry == null
-                            && timeZoneId.equals(mAlternateDefaultTimeZoneId)) {
-                        mDefaultTimeZoneCountry = country;
-                        TimeZone defaultTz = TimeZone.getTimeZone(mDefaultTimeZoneId);
-                        if (defaultTz != null) {
-                            mDefaultTimeZoneInfo = new TimeZoneInfo(defaultTz, country);
-
-                            int tzToOverride = getIdenticalTimeZoneInTheCountry(mDefaultTimeZoneInfo);
-                            if (tzToOverride == -1) {
-                                if (DEBUG) {
-                                    Log.e(TAG, "Adding default time zone: "
-                                            + mDefaultTimeZoneInfo.toString());
-                                }
-                                mTimeZones.add(mDefaultTimeZoneInfo);
-                            } else {
-                                mTimeZones.add(tzToOverride, mDefaultTimeZoneInfo);
-                                if (DEBUG) {
-                                    TimeZoneInfo tzInfoToOverride = mTimeZones.get(tzToOverride);
-                                    String tzIdToOverride = tzInfoToOverride.mTzId;
-                                    Log.e(TAG, "Replaced by default tz: "
-                                            + tzInfoToOverride.toString());
-                                    Log.e(TAG, "Adding default time zone: "
-                                            + mDefaultTimeZoneInfo.toString());
-                                }
+                    if (countryCodeCount == 0) {
+                        if (!timeZoneId.startsWith("Etc/GMT")) {
+                            processedTimeZones.add(timeZoneId);
+                            if (mLoadRecorder != null) {
+                                mLoadRecorder.mZonesDropped++;
                             }
                         }
+                        // Etc/GMT zones are added with the available ids
+                        continue;
                     }
 
-                    // Add to the list of time zones if the time zone is unique
-                    // in the given country.
-                    TimeZoneInfo timeZoneInfo = new TimeZoneInfo(tz, country);
-                    int identicalTzIdx = getIdenticalTimeZoneInTheCountry(timeZoneInfo);
-                    if (identicalTzIdx == -1) {
-                        if (DEBUG) {
-                            Log.e(TAG, "# Adding time zone: " + timeZoneId + " ## " +
-                                    tz.getDisplayName());
-                        }
-                        mTimeZones.add(timeZoneInfo);
-                    } else {
-                        if (DEBUG) {
-                            Log.e(TAG, "# Dropping identical time zone: " + timeZoneId + " ## " +
-                                    tz.getDisplayName());
-                        }
+                    // zone1970.tab lists all the countries of a zone, e.g.
+                    // "CH,DE,LI". Each gets its own entry, as if it had its
+                    // own zone.tab row.
+                    for (int i = 0; i < countryCodeCount; i++) {
+                        addZoneTabTimeZone(tz, timeZoneId, reader.getCountryCode(0, i));
                     }
                     processedTimeZones.add(timeZoneId);
                 }
             }
 
         } catch (IOException ex) {
-            Log.e(TAG, "Failed to read 'zone.tab'.");
+            Log.e(TAG, "Failed to read 'zone.tab' or 'zone1970.tab'.");
         } finally {
             try {
                 if (is != null) {
@@ -471,49 +898,98 @@ public class TimeZoneData {
             } catch (IOException ignored) {
             }
         }
+        endPhase(TimeZoneLoadMetrics.PHASE_ZONE_TAB);
 
         return processedTimeZones;
     }
 
-    private static Locale mBackupCountryLocale;
-    private static String[] mBackupCountryCodes;
-    private static String[] mBackupCountryNames;
-
-    private String getCountryNames(String lang, String countryCode) {
-        final Locale defaultLocale = Locale.getDefault();
-        String countryDisplayName;
-        if (PALESTINE_COUNTRY_CODE.equalsIgnoreCase(countryCode)) {
-            countryDisplayName = mPalestineDisplayName;
-        } else {
-            countryDisplayName = new Locale(lang, countryCode).getDisplayCountry(defaultLocale);
+    /**
+     * Adds a zone.tab time zone to the catalog for one of its countries,
+     * unless the country already has a time zone with the same rules.
+     */
+    private void addZoneTabTimeZone(TimeZone tz, String timeZoneId, String countryCode) {
+        // Remember the mapping between the country code and display name
+        String country = mCountryCodeToNameMap.get(countryCode);
+        if (country == null) {
+            country = mCountryNameTable.get(countryCode);
+            mCountryCodeToNameMap.put(countryCode, country);
         }
 
-        if (!countryCode.equals(countryDisplayName)) {
-            return countryDisplayName;
-        }
+        // TODO Don't like this here but need to get the country of the default tz.
 
-        if (mBackupCountryCodes == null || !defaultLocale.equals(mBackupCountryLocale)) {
-            mBackupCountryLocale = defaultLocale;
-            mBackupCountryCodes = mContext.getResources().getStringArray(
-                    R.array.backup_country_codes);
-            mBackupCountryNames = mContext.getResources().getStringArray(
-                    R.array.backup_country_names);
-        }
+        // Find the country of the default tz
+        if (mDefaultTimeZoneId != null && mDefaultTimeZoneCountry == null
+                && timeZoneId.equals(mAlternateDefaultTimeZoneId)) {
+            mDefaultTimeZoneCountry = country;
+            TimeZone defaultTz = TimeZone.getTimeZone(mDefaultTimeZoneId);
+            if (defaultTz != null) {
+                mDefaultTimeZoneInfo = new TimeZoneInfo(defaultTz, country, countryCode);
 
-        int length = Math.min(mBackupCountryCodes.length, mBackupCountryNames.length);
-
-        for (int i = 0; i < length; i++) {
-            if (mBackupCountryCodes[i].equals(countryCode)) {
-                return mBackupCountryNames[i];
+                int tzToOverride = getIdenticalTimeZoneInTheCountry(mDefaultTimeZoneInfo);
+                if (tzToOverride == -1) {
+                    if (DEBUG) {
+                        Log.e(TAG, "Adding default time zone: "
+                                + mDefaultTimeZoneInfo.toString());
+                    }
+                    mTimeZones.add(mDefaultTimeZoneInfo);
+                } else {
+                    mTimeZones.add(tzToOverride, mDefaultTimeZoneInfo);
+                    if (DEBUG) {
+                        TimeZoneInfo tzInfoToOverride = mTimeZones.get(tzToOverride);
+                        String tzIdToOverride = tzInfoToOverride.mTzId;
+                        Log.e(TAG, "Replaced by default tz: "
+                                + tzInfoToOverride.toString());
+                        Log.e(TAG, "Adding default time zone: "
+                                + mDefaultTimeZoneInfo.toString());
+                    }
+                }
             }
         }
 
-        return countryCode;
+        // Add to the list of time zones if the time zone is unique in the given country.
+        TimeZoneInfo timeZoneInfo = new TimeZoneInfo(tz, country, countryCode);
+        int identicalTzIdx = getIdenticalTimeZoneInTheCountry(timeZoneInfo);
+        if (identicalTzIdx == -1) {
+            if (DEBUG) {
+                Log.e(TAG, "# Adding time zone: " + timeZoneId + " ## " +
+                        tz.getDisplayName());
+            }
+            mTimeZones.add(timeZoneInfo);
+        } else {
+            if (!timeZoneId.equals(mTimeZones.get(identicalTzIdx).mTzId)) {
+                mDroppedTimeZones.put(timeZoneId, mTimeZones.get(identicalTzIdx));
+            }
+            if (mLoadRecorder != null) {
+                mLoadRecorder.mZonesDropped++;
+            }
+            if (DEBUG) {
+                Log.e(TAG, "# Dropping identical time zone: " + timeZoneId + " ## " +
+                        tz.getDisplayName());
+            }
+        }
     }
 
     private int getIdenticalTimeZoneInTheCountry(TimeZoneInfo timeZoneInfo) {
+        if (mLoadRecorder == null) {
+            return getIdenticalTimeZoneInTheCountry(mTimeZones, timeZoneInfo);
+        }
+        final long start = System.nanoTime();
+        int idx = getIdenticalTimeZoneInTheCountry(mTimeZones, timeZoneInfo);
+        mLoadRecorder.addPhaseNanos(TimeZoneLoadMetrics.PHASE_DEDUP, System.nanoTime() - start);
+        return idx;
+    }
+
+    /**
+     * Package-private so that the benchmarks can run the dedup of loading
+     * over a copy of a loaded catalog.
+     *
+     * @return the index in timeZones of a time zone in the same country with
+     *         the same rules as timeZoneInfo, or -1
+     */
+    static int getIdenticalTimeZoneInTheCountry(List<TimeZoneInfo> timeZones,
+            TimeZoneInfo timeZoneInfo) {
         int idx = 0;
-        for (TimeZoneInfo tzi : mTimeZones) {
+        for (TimeZoneInfo tzi : timeZones) {
             if (tzi.hasSameRules(timeZoneInfo)) {
                 if (tzi.mCountry == null) {
                     if (timeZoneInfo.mCountry == null) {
@@ -527,4 +1003,16 @@ public class TimeZoneData {
         }
         return -1;
     }
+
+    private void beginPhase(int phase) {
+        if (mLoadRecorder != null) {
+            mLoadRecorder.beginPhase(phase);
+        }
+    }
+
+    private void endPhase(int phase) {
+        if (mLoadRecorder != null) {
+            mLoadRecorder.endPhase(phase);
+        }
+    }
 }
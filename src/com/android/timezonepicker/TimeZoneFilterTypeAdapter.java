@@ -17,8 +17,12 @@
 package com.android.timezonepicker;
 
 import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -28,19 +32,29 @@ import android.widget.Filter;
 import android.widget.Filterable;
 import android.widget.TextView;
 
+import com.android.timezonepicker.TimeZoneQueryEngine.Suggestion;
+
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TimeZoneFilterTypeAdapter extends BaseAdapter implements Filterable, OnClickListener {
     public static final String TAG = "TimeZoneFilterTypeAdapter";
 
     private static final boolean DEBUG = false;
 
-    public static final int FILTER_TYPE_EMPTY = -1;
-    public static final int FILTER_TYPE_NONE = 0;
-    public static final int FILTER_TYPE_COUNTRY = 1;
-    public static final int FILTER_TYPE_STATE = 2;
-    public static final int FILTER_TYPE_GMT = 3;
+    public static final int FILTER_TYPE_EMPTY = TimeZoneQueryEngine.FILTER_TYPE_EMPTY;
+    public static final int FILTER_TYPE_NONE = TimeZoneQueryEngine.FILTER_TYPE_NONE;
+    public static final int FILTER_TYPE_COUNTRY = TimeZoneQueryEngine.FILTER_TYPE_COUNTRY;
+    public static final int FILTER_TYPE_STATE = TimeZoneQueryEngine.FILTER_TYPE_STATE;
+    public static final int FILTER_TYPE_GMT = TimeZoneQueryEngine.FILTER_TYPE_GMT;
+    public static final int FILTER_TYPE_LOCAL_TIME = TimeZoneQueryEngine.FILTER_TYPE_LOCAL_TIME;
+
+    /** How many filters the drop down offers at most. */
+    public static final int DEFAULT_MAX_RESULTS = 20;
+
+    /** FilterResults.values of a query that was superseded while running. */
+    private static final Object STALE_RESULTS = new Object();
 
     public interface OnSetFilterListener {
         void onSetFilter(int filterType, String str, int time);
@@ -59,46 +73,162 @@ public class TimeZoneFilterTypeAdapter extends BaseAdapter implements Filterable
         }
     }
 
-    class FilterTypeResult {
-        int type;
-        String constraint;
-        public int time;
-
-        public FilterTypeResult(int type, String constraint, int time) {
-            this.type = type;
-            this.constraint = constraint;
-            this.time = time;
-        }
-
-        @Override
-        public String toString() {
-            return constraint;
-        }
-    }
-
-    private ArrayList<FilterTypeResult> mLiveResults = new ArrayList<FilterTypeResult>();
-    private int mLiveResultsCount = 0;
+    private List<Suggestion> mLiveResults = new ArrayList<Suggestion>();
+    private volatile int mLiveResultsCount = 0;
 
     private ArrayFilter mFilter;
 
     private LayoutInflater mInflater;
 
-    private TimeZoneData mTimeZoneData;
+    private TimeZoneQueryEngine mEngine;
     private OnSetFilterListener mListener;
 
+    private volatile int mMaxResults = DEFAULT_MAX_RESULTS;
+    private volatile int[] mRecentTimeZoneIndices;
+
+    /**
+     * Bumped for every query. A running query whose generation is no longer
+     * current has been superseded and stops at the next stage.
+     */
+    private final AtomicInteger mQueryGeneration = new AtomicInteger();
+
+    // Results waiting for the next frame. Only the latest ones are kept.
+    private CharSequence mPendingConstraint;
+    private List<Suggestion> mPendingResults;
+    private int mPendingResultsCount;
+    private boolean mPublishScheduled;
+    private Object mFrameCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mPublishRunnable = new Runnable() {
+        @Override
+        public void run() {
+            publishPendingResults();
+        }
+    };
+
     public TimeZoneFilterTypeAdapter(Context context, TimeZoneData tzd, OnSetFilterListener l) {
-        mTimeZoneData = tzd;
+        this(context, new TimeZoneQueryEngine(tzd), l);
+    }
+
+    public TimeZoneFilterTypeAdapter(Context context, TimeZoneQueryEngine engine,
+            OnSetFilterListener l) {
+        mEngine = engine;
         mListener = l;
         mInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
     }
 
+    /**
+     * Sets the most recently selected time zones. Their countries are ranked
+     * higher in the results.
+     *
+     * @param indices TimeZoneData indices
+     */
+    public void setRecentTimeZones(int[] indices) {
+        mRecentTimeZoneIndices = indices;
+    }
+
+    /**
+     * Sets how many filters the drop down offers at most.
+     */
+    public void setMaxResults(int maxResults) {
+        mMaxResults = maxResults;
+    }
+
+    /**
+     * Sets how many typos are tolerated when nothing matches the query
+     * exactly. 0 turns fuzzy matching off.
+     */
+    public void setMaxEditDistance(int maxEditDistance) {
+        mEngine.setMaxEditDistance(maxEditDistance);
+    }
+
+    /**
+     * Sets the longest time a keystroke may spend in fuzzy matching before the
+     * matches found so far are returned.
+     */
+    public void setFuzzySearchTimeBudget(long millis) {
+        mEngine.setFuzzySearchTimeBudget(millis);
+    }
+
+    /**
+     * Filters on the given string. Any query still running on the filter
+     * thread is abandoned; Filter already drops the ones that haven't started.
+     */
+    public void filter(CharSequence constraint) {
+        mQueryGeneration.incrementAndGet();
+        getFilter().filter(constraint);
+    }
+
+    private void schedulePublish() {
+        if (mPublishScheduled) {
+            return;
+        }
+        mPublishScheduled = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mFrameCallback == null) {
+                mFrameCallback = new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        publishPendingResults();
+                    }
+                };
+            }
+            Choreographer.getInstance().postFrameCallback(
+                    (Choreographer.FrameCallback) mFrameCallback);
+        } else {
+            mHandler.post(mPublishRunnable);
+        }
+    }
+
+    private void publishPendingResults() {
+        if (!mPublishScheduled) {
+            return;
+        }
+        mPublishScheduled = false;
+        applyResults(mPendingConstraint, mPendingResults, mPendingResultsCount);
+        mPendingConstraint = null;
+        mPendingResults = null;
+    }
+
+    private void applyResults(CharSequence constraint, List<Suggestion> results,
+            int count) {
+        if (results == null || count == 0) {
+            if (mListener != null) {
+                int filterType;
+                if (TextUtils.isEmpty(constraint)) {
+                    filterType = FILTER_TYPE_NONE;
+                } else {
+                    filterType = FILTER_TYPE_EMPTY;
+                }
+                mListener.onSetFilter(filterType, null, 0);
+            }
+            if (DEBUG) {
+                Log.d(TAG, "publishResults: " + count + " of null [" + constraint);
+            }
+        } else {
+            mLiveResults = results;
+            if (DEBUG) {
+                Log.d(TAG, "publishResults: " + count + " of " + mLiveResults.size()
+                        + " [" + constraint);
+            }
+        }
+        mLiveResultsCount = count;
+
+        if (count > 0) {
+            notifyDataSetChanged();
+        } else {
+            notifyDataSetInvalidated();
+        }
+    }
+
     @Override
     public int getCount() {
         return mLiveResultsCount;
     }
 
     @Override
-    public FilterTypeResult getItem(int position) {
+    public Suggestion getItem(int position) {
         return mLiveResults.get(position);
     }
 
@@ -124,7 +254,7 @@ public class TimeZoneFilterTypeAdapter extends BaseAdapter implements Filterable
             Log.e(TAG, "getView: " + position + " of " + mLiveResults.size());
         }
 
-        FilterTypeResult filter = mLiveResults.get(position);
+        Suggestion filter = mLiveResults.get(position);
 
         vh.filterType = filter.type;
         vh.str = filter.constraint;
@@ -170,262 +300,57 @@ public class TimeZoneFilterTypeAdapter extends BaseAdapter implements Filterable
                 Log.d(TAG, "performFiltering >>>> [" + prefix + "]");
             }
 
+            final int generation = mQueryGeneration.get();
+            TimeZoneQueryEngine.Response response = mEngine.suggest(
+                    TimeZoneQueryEngine.Request.forSuggestions(
+                            prefix == null ? null : prefix.toString(), mMaxResults,
+                            mRecentTimeZoneIndices),
+                    new TimeZoneQueryEngine.CancellationToken() {
+                        @Override
+                        public boolean isCancelled() {
+                            return generation != mQueryGeneration.get();
+                        }
+                    });
+
             FilterResults results = new FilterResults();
-            String prefixString = null;
-            if (prefix != null) {
-                prefixString = prefix.toString().trim().toLowerCase();
+            if (response == null) {
+                if (DEBUG) {
+                    Log.d(TAG, "performFiltering: superseded [" + prefix + "]");
+                }
+                results.values = STALE_RESULTS;
+                // Keep the drop down as it is until the latest query is published
+                results.count = mLiveResultsCount;
+                return results;
             }
 
-            if (TextUtils.isEmpty(prefixString)) {
+            if (response.suggestions.isEmpty()) {
                 results.values = null;
                 results.count = 0;
-                return results;
-            }
-
-            // TODO Perf - we can loop through the filtered list if the new
-            // search string starts with the old search string
-            ArrayList<FilterTypeResult> filtered = new ArrayList<FilterTypeResult>();
-
-            // ////////////////////////////////////////
-            // Search by local time and GMT offset
-            // ////////////////////////////////////////
-            boolean gmtOnly = false;
-            int startParsePosition = 0;
-            if (prefixString.charAt(0) == '+' || prefixString.charAt(0) == '-') {
-                gmtOnly = true;
-            }
-
-            if (prefixString.startsWith("gmt")) {
-                startParsePosition = 3;
-                gmtOnly = true;
-            }
-
-            int num = parseNum(prefixString, startParsePosition);
-            if (num != Integer.MIN_VALUE) {
-                boolean positiveOnly = prefixString.length() > startParsePosition
-                        && prefixString.charAt(startParsePosition) == '+';
-                handleSearchByGmt(filtered, num, positiveOnly);
-            }
-
-            // ////////////////////////////////////////
-            // Search by country
-            // ////////////////////////////////////////
-            ArrayList<String> countries = new ArrayList<String>();
-            for (String country : mTimeZoneData.mTimeZonesByCountry.keySet()) {
-                // TODO Perf - cache toLowerCase()?
-                if (!TextUtils.isEmpty(country)) {
-                    final String lowerCaseCountry = country.toLowerCase();
-                    boolean isMatch = false;
-                    if (lowerCaseCountry.startsWith(prefixString)
-                            || (lowerCaseCountry.charAt(0) == prefixString.charAt(0) &&
-                            isStartingInitialsFor(prefixString, lowerCaseCountry))) {
-                        isMatch = true;
-                    } else if (lowerCaseCountry.contains(" ")){
-                        // We should also search other words in the country name, so that
-                        // searches like "Korea" yield "South Korea".
-                        for (String word : lowerCaseCountry.split(" ")) {
-                            if (word.startsWith(prefixString)) {
-                                isMatch = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (isMatch) {
-                        countries.add(country);
-                    }
-                }
-            }
-            if (countries.size() > 0) {
-                // Sort countries alphabetically.
-                Collections.sort(countries);
-                for (String country : countries) {
-                    filtered.add(new FilterTypeResult(FILTER_TYPE_COUNTRY, country, 0));
-                }
+            } else {
+                results.values = response.suggestions;
+                results.count = response.suggestions.size();
             }
 
-            // ////////////////////////////////////////
-            // TODO Search by state
-            // ////////////////////////////////////////
             if (DEBUG) {
-                Log.d(TAG, "performFiltering <<<< " + filtered.size() + "[" + prefix + "]");
+                Log.d(TAG, "performFiltering <<<< " + results.count + "[" + prefix + "]");
             }
-
-            results.values = filtered;
-            results.count = filtered.size();
             return results;
         }
 
-        /**
-         * Returns true if the prefixString is an initial for string. Note that
-         * this method will return true even if prefixString does not cover all
-         * the words. Words are separated by non-letters which includes spaces
-         * and symbols).
-         *
-         * For example:
-         * isStartingInitialsFor("UA", "United Arab Emirates") would return true
-         * isStartingInitialsFor("US", "U.S. Virgin Island") would return true
-         *
-         * @param prefixString
-         * @param string
-         * @return
-         */
-        private boolean isStartingInitialsFor(String prefixString, String string) {
-            final int initialLen = prefixString.length();
-            final int strLen = string.length();
-
-            int initialIdx = 0;
-            boolean wasWordBreak = true;
-            for (int i = 0; i < strLen; i++) {
-                if (!Character.isLetter(string.charAt(i))) {
-                    wasWordBreak = true;
-                    continue;
-                }
-
-                if (wasWordBreak) {
-                    if (prefixString.charAt(initialIdx++) != string.charAt(i)) {
-                        return false;
-                    }
-                    if (initialIdx == initialLen) {
-                        return true;
-                    }
-                    wasWordBreak = false;
-                }
-            }
-
-            // Special case for "USA". Note that both strings have been turned to lowercase already.
-            if (prefixString.equals("usa") && string.equals("united states")) {
-                return true;
-            }
-            return false;
-        }
-
-        private void handleSearchByGmt(ArrayList<FilterTypeResult> filtered, int num,
-                boolean positiveOnly) {
-
-            FilterTypeResult r;
-            if (num >= 0) {
-                if (num == 1) {
-                    for (int i = 19; i >= 10; i--) {
-                        if (mTimeZoneData.hasTimeZonesInHrOffset(i)) {
-                            r = new FilterTypeResult(FILTER_TYPE_GMT, "GMT+" + i, i);
-                            filtered.add(r);
-                        }
-                    }
-                }
-
-                if (mTimeZoneData.hasTimeZonesInHrOffset(num)) {
-                    r = new FilterTypeResult(FILTER_TYPE_GMT, "GMT+" + num, num);
-                    filtered.add(r);
-                }
-                num *= -1;
-            }
-
-            if (!positiveOnly && num != 0) {
-                if (mTimeZoneData.hasTimeZonesInHrOffset(num)) {
-                    r = new FilterTypeResult(FILTER_TYPE_GMT, "GMT" + num, num);
-                    filtered.add(r);
-                }
-
-                if (num == -1) {
-                    for (int i = -10; i >= -19; i--) {
-                        if (mTimeZoneData.hasTimeZonesInHrOffset(i)) {
-                            r = new FilterTypeResult(FILTER_TYPE_GMT, "GMT" + i, i);
-                            filtered.add(r);
-                        }
-                    }
-                }
-            }
-        }
-
-        /**
-         * Acceptable strings are in the following format: [+-]?[0-9]?[0-9]
-         *
-         * @param str
-         * @param startIndex
-         * @return Integer.MIN_VALUE as invalid
-         */
-        public int parseNum(String str, int startIndex) {
-            int idx = startIndex;
-            int num = Integer.MIN_VALUE;
-            int negativeMultiplier = 1;
-
-            // First char - check for + and -
-            char ch = str.charAt(idx++);
-            switch (ch) {
-                case '-':
-                    negativeMultiplier = -1;
-                    // fall through
-                case '+':
-                    if (idx >= str.length()) {
-                        // No more digits
-                        return Integer.MIN_VALUE;
-                    }
-
-                    ch = str.charAt(idx++);
-                    break;
-            }
-
-            if (!Character.isDigit(ch)) {
-                // No digit
-                return Integer.MIN_VALUE;
-            }
-
-            // Got first digit
-            num = Character.digit(ch, 10);
-
-            // Check next char
-            if (idx < str.length()) {
-                ch = str.charAt(idx++);
-                if (Character.isDigit(ch)) {
-                    // Got second digit
-                    num = 10 * num + Character.digit(ch, 10);
-                } else {
-                    return Integer.MIN_VALUE;
-                }
-            }
-
-            if (idx != str.length()) {
-                // Invalid
-                return Integer.MIN_VALUE;
-            }
-
-            if (DEBUG) {
-                Log.d(TAG, "Parsing " + str + " -> " + negativeMultiplier * num);
-            }
-            return negativeMultiplier * num;
-        }
-
         @SuppressWarnings("unchecked")
         @Override
         protected void publishResults(CharSequence constraint, FilterResults
                 results) {
-            if (results.values == null || results.count == 0) {
-                if (mListener != null) {
-                    int filterType;
-                    if (TextUtils.isEmpty(constraint)) {
-                        filterType = FILTER_TYPE_NONE;
-                    } else {
-                        filterType = FILTER_TYPE_EMPTY;
-                    }
-                    mListener.onSetFilter(filterType, null, 0);
-                }
-                if (DEBUG) {
-                    Log.d(TAG, "publishResults: " + results.count + " of null [" + constraint);
-                }
-            } else {
-                mLiveResults = (ArrayList<FilterTypeResult>) results.values;
-                if (DEBUG) {
-                    Log.d(TAG, "publishResults: " + results.count + " of " + mLiveResults.size()
-                            + " [" + constraint);
-                }
+            if (results.values == STALE_RESULTS) {
+                return;
             }
-            mLiveResultsCount = results.count;
 
-            if (results.count > 0) {
-                notifyDataSetChanged();
-            } else {
-                notifyDataSetInvalidated();
-            }
+            // Several queries may complete within one frame. Only the last
+            // one is handed to the adapters.
+            mPendingConstraint = constraint;
+            mPendingResults = (List<Suggestion>) results.values;
+            mPendingResultsCount = results.count;
+            schedulePublish();
         }
     }
 }
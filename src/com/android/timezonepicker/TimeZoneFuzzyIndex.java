@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * BK-tree over the folded country, city and time zone name tokens of a
+ * {@link TimeZoneData}. Each token remembers the countries it came from so that
+ * a misspelled query ("phillipines", "kazakstan", "los angelos") can be turned
+ * into country filter results.
+ *
+ * The tree is immutable once built and can be searched from any thread.
+ */
+class TimeZoneFuzzyIndex {
+    private static final String TAG = "TimeZoneFuzzyIndex";
+    private static final boolean DEBUG = false;
+
+    /** Tokens shorter than this are too ambiguous to be matched fuzzily. */
+    private static final int MIN_TOKEN_LENGTH = 3;
+
+    /** How many nodes are visited between two looks at the clock. */
+    private static final int DEADLINE_CHECK_INTERVAL = 32;
+
+    private static class Node {
+        final String term;
+        int[] countries = new int[2];
+        int countryCount;
+        SparseArray<Node> children;
+
+        Node(String term) {
+            this.term = term;
+        }
+
+        void addCountry(int country) {
+            for (int i = 0; i < countryCount; i++) {
+                if (countries[i] == country) {
+                    return;
+                }
+            }
+            if (countryCount == countries.length) {
+                int[] grown = new int[countryCount * 2];
+                System.arraycopy(countries, 0, grown, 0, countryCount);
+                countries = grown;
+            }
+            countries[countryCount++] = country;
+        }
+    }
+
+    private final TimeZoneSearchKeys mSearchKeys;
+    private Node mRoot;
+    private int mNodeCount;
+
+    TimeZoneFuzzyIndex(TimeZoneData tzd) {
+        mSearchKeys = tzd.mSearchKeys;
+        final Locale locale = mSearchKeys.mLocale;
+
+        HashMap<String, Integer> countryOrdinals = new HashMap<String, Integer>();
+        for (int i = 0; i < mSearchKeys.size(); i++) {
+            countryOrdinals.put(mSearchKeys.mCountries[i], i);
+            addTokens(mSearchKeys.mCountryKeys[i], i);
+        }
+
+        final int size = tzd.size();
+        for (int i = 0; i < size; i++) {
+            TimeZoneInfo tzi = tzd.get(i);
+            Integer country = tzi.mCountry == null ? null : countryOrdinals.get(tzi.mCountry);
+            if (country == null) {
+                continue;
+            }
+
+            // City, e.g. "America/Los_Angeles" -> "los angeles"
+            String city = tzi.mTzId.substring(tzi.mTzId.lastIndexOf('/') + 1);
+            addTokens(TimeZoneSearchKeys.fold(city.replace('_', ' '), locale), country);
+
+            // Skip all the GMT+xx:xx style display names, as TimeZoneData does
+            if (tzi.mDisplayName != null && !tzi.mDisplayName.endsWith(":00")) {
+                addTokens(TimeZoneSearchKeys.fold(tzi.mDisplayName, locale), country);
+            }
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Indexed " + mNodeCount + " tokens for " + mSearchKeys.size()
+                    + " countries");
+        }
+    }
+
+    /**
+     * Adds the whole string as well as each of its words, so that both
+     * "south korea" and "korea" can be matched.
+     */
+    private void addTokens(String str, int country) {
+        addToken(str, country);
+
+        final int len = str.length();
+        int wordStart = -1;
+        for (int i = 0; i <= len; i++) {
+            boolean isLetter = i < len && Character.isLetter(str.charAt(i));
+            if (isLetter && wordStart == -1) {
+                wordStart = i;
+            } else if (!isLetter && wordStart != -1) {
+                if (wordStart > 0 || i < len) {
+                    addToken(str.substring(wordStart, i), country);
+                }
+                wordStart = -1;
+            }
+        }
+    }
+
+    private void addToken(String token, int country) {
+        if (token.length() < MIN_TOKEN_LENGTH) {
+            return;
+        }
+
+        if (mRoot == null) {
+            mRoot = new Node(token);
+            mRoot.addCountry(country);
+            mNodeCount++;
+            return;
+        }
+
+        final int[] prevRow = new int[token.length() + 1];
+        final int[] currRow = new int[token.length() + 1];
+        Node node = mRoot;
+        while (true) {
+            int distance = editDistance(node.term, token, Integer.MAX_VALUE, prevRow, currRow);
+            if (distance == 0) {
+                node.addCountry(country);
+                return;
+            }
+
+            if (node.children == null) {
+                node.children = new SparseArray<Node>();
+            }
+            Node child = node.children.get(distance);
+            if (child == null) {
+                child = new Node(token);
+                child.addCountry(country);
+                node.children.put(distance, child);
+                mNodeCount++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Finds the countries that have a token within maxDistance edits of the
+     * query.
+     *
+     * @param query search string folded with {@link TimeZoneSearchKeys#fold}
+     * @param maxDistance the maximum number of insertions, deletions and
+     *            substitutions
+     * @param budgetNanos how long the search may run. When the budget runs out
+     *            the matches found so far are returned.
+     * @param outDistances filled with the smallest distance of each country, by
+     *            {@link TimeZoneSearchKeys} index, or Integer.MAX_VALUE if the
+     *            country didn't match. Must hold at least
+     *            {@link TimeZoneSearchKeys#size()} entries.
+     * @return the number of matching countries
+     */
+    int search(String query, int maxDistance, long budgetNanos, int[] outDistances) {
+        final int[] bestDistances = outDistances;
+        for (int i = 0; i < mSearchKeys.size(); i++) {
+            bestDistances[i] = Integer.MAX_VALUE;
+        }
+        if (mRoot == null || maxDistance <= 0) {
+            return 0;
+        }
+
+        final long deadline = System.nanoTime() + budgetNanos;
+        final int[] prevRow = new int[query.length() + 1];
+        final int[] currRow = new int[query.length() + 1];
+
+        ArrayList<Node> stack = new ArrayList<Node>();
+        stack.add(mRoot);
+        int visited = 0;
+        while (!stack.isEmpty()) {
+            if (++visited % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                if (DEBUG) {
+                    Log.d(TAG, "Out of time after " + visited + " nodes [" + query + "]");
+                }
+                break;
+            }
+
+            Node node = stack.remove(stack.size() - 1);
+            // The exact distance only matters up to the largest child edge
+            // that can still be in range, so give up on the row beyond it
+            int limit = maxDistance;
+            if (node.children != null) {
+                limit += Math.max(node.children.keyAt(node.children.size() - 1), 0);
+            }
+            int distance = editDistance(node.term, query, limit, prevRow, currRow);
+            if (distance <= maxDistance) {
+                for (int i = 0; i < node.countryCount; i++) {
+                    int country = node.countries[i];
+                    if (distance < bestDistances[country]) {
+                        bestDistances[country] = distance;
+                    }
+                }
+            }
+
+            if (node.children != null) {
+                // Triangle inequality: only subtrees at distance d-k..d+k can
+                // contain matches.
+                for (int i = 0; i < node.children.size(); i++) {
+                    int childDistance = node.children.keyAt(i);
+                    if (childDistance >= distance - maxDistance
+                            && childDistance <= distance + maxDistance) {
+                        stack.add(node.children.valueAt(i));
+                    }
+                }
+            }
+        }
+
+        int matchCount = 0;
+        for (int i = 0; i < mSearchKeys.size(); i++) {
+            if (bestDistances[i] != Integer.MAX_VALUE) {
+                matchCount++;
+            }
+        }
+        return matchCount;
+    }
+
+    /**
+     * Levenshtein distance between term and query. Gives up and returns
+     * limit + 1 as soon as every cell of a row exceeds limit.
+     *
+     * @param prevRow scratch space of at least query.length() + 1
+     * @param currRow scratch space of at least query.length() + 1
+     */
+    static int editDistance(String term, String query, int limit, int[] prevRow, int[] currRow) {
+        final int queryLen = query.length();
+        for (int j = 0; j <= queryLen; j++) {
+            prevRow[j] = j;
+        }
+
+        final int termLen = term.length();
+        for (int i = 1; i <= termLen; i++) {
+            final char ch = term.charAt(i - 1);
+            currRow[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= queryLen; j++) {
+                int cost = ch == query.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(currRow[j - 1] + 1, prevRow[j] + 1),
+                        prevRow[j - 1] + cost);
+                currRow[j] = value;
+                if (value < rowMin) {
+                    rowMin = value;
+                }
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] tmp = prevRow;
+            prevRow = currRow;
+            currRow = tmp;
+        }
+        return prevRow[queryLen];
+    }
+}
@@ -32,6 +32,7 @@ import java.util.Date;
 import java.util.Formatter;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TimeZoneInfo implements Comparable<TimeZoneInfo> {
     private static final int GMT_TEXT_COLOR = TimeZonePickerUtils.GMT_TEXT_COLOR;
@@ -47,11 +48,11 @@ public class TimeZoneInfo implements Comparable<TimeZoneInfo> {
     public String mTzId;
     int mRawoffset;
     public String mCountry;
+    /** ISO 3166 code of mCountry, or null */
+    String mCountryCode;
     public int groupId;
     public String mDisplayName;
     private Time recycledTime = new Time();
-    private static StringBuilder mSB = new StringBuilder(50);
-    private static Formatter mFormatter = new Formatter(mSB, Locale.getDefault());
 
     public TimeZoneInfo(TimeZone tz, String country) {
         mTz = tz;
@@ -60,11 +61,46 @@ public class TimeZoneInfo implements Comparable<TimeZoneInfo> {
         mRawoffset = tz.getRawOffset();
     }
 
+    TimeZoneInfo(TimeZone tz, String country, String countryCode) {
+        this(tz, country);
+        mCountryCode = countryCode;
+    }
+
     SparseArray<String> mLocalTimeCache = new SparseArray<String>();
     long mLocalTimeCacheReferenceTime = 0;
-    static private long mGmtDisplayNameUpdateTime;
-    static private SparseArray<CharSequence> mGmtDisplayNameCache =
-            new SparseArray<CharSequence>();
+
+    /** The GMT display names of one minute, by offset and DST */
+    private static final class GmtDisplayNameCache {
+        final long minute;
+        final ConcurrentHashMap<Integer, CharSequence> names =
+                new ConcurrentHashMap<Integer, CharSequence>();
+
+        GmtDisplayNameCache(long minute) {
+            this.minute = minute;
+        }
+    }
+
+    /** Replaced, not cleared, when the minute changes */
+    private static volatile GmtDisplayNameCache sGmtDisplayNameCache =
+            new GmtDisplayNameCache(0);
+
+    private static final TimeZoneCacheStats.Recorder[] sCacheStats = {
+            new TimeZoneCacheStats.Recorder(), new TimeZoneCacheStats.Recorder(),
+    };
+
+    /**
+     * Returns the hit, miss and clear counts of the display name and local
+     * time caches of all time zones so far.
+     */
+    public static TimeZoneCacheStats getCacheStats() {
+        return TimeZoneCacheStats.snapshot(sCacheStats);
+    }
+
+    public static void resetCacheStats() {
+        for (TimeZoneCacheStats.Recorder recorder : sCacheStats) {
+            recorder.reset();
+        }
+    }
 
     public String getLocalTime(long referenceTime) {
         recycledTime.timezone = TimeZone.getDefault().getID();
@@ -80,14 +116,20 @@ public class TimeZoneInfo implements Comparable<TimeZoneInfo> {
         int hourMinute = recycledTime.hour * 60 +
                 recycledTime.minute;
 
+        final TimeZoneCacheStats.Recorder stats =
+                sCacheStats[TimeZoneCacheStats.CACHE_LOCAL_TIME];
         if (mLocalTimeCacheReferenceTime != referenceTime) {
             mLocalTimeCacheReferenceTime = referenceTime;
+            stats.recordClear(mLocalTimeCache.size());
             mLocalTimeCache.clear();
         } else {
             localTimeStr = mLocalTimeCache.get(hourMinute);
         }
 
-        if (localTimeStr == null) {
+        if (localTimeStr != null) {
+            stats.mHits.increment();
+        } else {
+            final long start = System.nanoTime();
             String format = "%I:%M %p";
             if (currYearDay != (recycledTime.year * 366 + recycledTime.yearDay)) {
                 if (is24HourFormat) {
@@ -102,6 +144,7 @@ public class TimeZoneInfo implements Comparable<TimeZoneInfo> {
             // format = "%Y-%m-%d %H:%M";
             localTimeStr = recycledTime.format(format);
             mLocalTimeCache.put(hourMinute, localTimeStr);
+            stats.recordMiss(System.nanoTime() - start);
         }
 
         return localTimeStr;
@@ -118,11 +161,11 @@ public class TimeZoneInfo implements Comparable<TimeZoneInfo> {
     }
 
     /*
-     * The method is synchronized because there's one mSB, which is used by
-     * mFormatter, per instance. If there are multiple callers for
-     * getGmtDisplayName, the output may be mangled.
+     * Can be called from several threads, e.g. a pre-warm thread and the UI
+     * thread, without locking. The cache is shared by all instances and
+     * replaced every minute; each miss formats into its own buffer.
      */
-    public synchronized CharSequence getGmtDisplayName(Context context) {
+    public CharSequence getGmtDisplayName(Context context) {
         // TODO Note: The local time is shown in current time (current GMT
         // offset) which may be different from the time specified by
         // mTimeMillis
@@ -139,40 +182,49 @@ public class TimeZoneInfo implements Comparable<TimeZoneInfo> {
             cacheKey = (int) (gmtOffset - 36 * DateUtils.HOUR_IN_MILLIS);
         }
 
+        final TimeZoneCacheStats.Recorder stats =
+                sCacheStats[TimeZoneCacheStats.CACHE_GMT_DISPLAY_NAME];
         CharSequence displayName = null;
-        if (mGmtDisplayNameUpdateTime != nowMinute) {
-            mGmtDisplayNameUpdateTime = nowMinute;
-            mGmtDisplayNameCache.clear();
+        GmtDisplayNameCache cache = sGmtDisplayNameCache;
+        if (cache.minute != nowMinute) {
+            // Threads that race here each start a cache; one of them stays
+            stats.recordClear(cache.names.size());
+            cache = new GmtDisplayNameCache(nowMinute);
+            sGmtDisplayNameCache = cache;
         } else {
-            displayName = mGmtDisplayNameCache.get(cacheKey);
+            displayName = cache.names.get(cacheKey);
         }
 
-        if (displayName == null) {
-            mSB.setLength(0);
+        if (displayName != null) {
+            stats.mHits.increment();
+        } else {
+            final long start = System.nanoTime();
+            final StringBuilder sb = new StringBuilder(50);
             int flags = DateUtils.FORMAT_ABBREV_ALL;
             flags |= DateUtils.FORMAT_SHOW_TIME;
             if (TimeZoneInfo.is24HourFormat) {
                 flags |= DateUtils.FORMAT_24HOUR;
             }
 
-            // mFormatter writes to mSB
-            DateUtils.formatDateRange(context, mFormatter, now, now, flags, mTzId);
-            mSB.append("  ");
-            int gmtStart = mSB.length();
-            TimeZonePickerUtils.appendGmtOffset(mSB, gmtOffset);
-            int gmtEnd = mSB.length();
+            // The formatter writes to sb
+            DateUtils.formatDateRange(context, new Formatter(sb, Locale.getDefault()), now, now,
+                    flags, mTzId);
+            sb.append("  ");
+            int gmtStart = sb.length();
+            TimeZonePickerUtils.appendGmtOffset(sb, gmtOffset);
+            int gmtEnd = sb.length();
 
             int symbolStart = 0;
             int symbolEnd = 0;
             if (hasFutureDST) {
-                mSB.append(' ');
-                symbolStart = mSB.length();
-                mSB.append(TimeZonePickerUtils.getDstSymbol()); // Sun symbol
-                symbolEnd = mSB.length();
+                sb.append(' ');
+                symbolStart = sb.length();
+                sb.append(TimeZonePickerUtils.getDstSymbol()); // Sun symbol
+                symbolEnd = sb.length();
             }
 
             // Set the gray colors.
-            Spannable spannableText = mSpannableFactory.newSpannable(mSB);
+            Spannable spannableText = mSpannableFactory.newSpannable(sb);
             spannableText.setSpan(new ForegroundColorSpan(GMT_TEXT_COLOR),
                     gmtStart, gmtEnd, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
 
@@ -181,7 +233,8 @@ public class TimeZoneInfo implements Comparable<TimeZoneInfo> {
                         symbolStart, symbolEnd, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
             displayName = spannableText;
-            mGmtDisplayNameCache.put(cacheKey, displayName);
+            cache.names.put(cacheKey, displayName);
+            stats.recordMiss(System.nanoTime() - start);
         }
         return displayName;
     }
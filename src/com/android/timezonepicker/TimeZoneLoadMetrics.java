@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * How long each phase of loading a {@link TimeZoneData} took, and how many
+ * time zones went in and out of the catalog.
+ *
+ * The phases, except PHASE_DEDUP, are also emitted as {@link Trace}
+ * sections, so they show up in systrace/perfetto captures of app startup.
+ * Register a {@link Listener} with
+ * {@link TimeZoneData#setLoadMetricsListener} to receive them in the app.
+ */
+public final class TimeZoneLoadMetrics {
+    /** Parsing the 'backward' file */
+    public static final int PHASE_BACKWARD = 0;
+    /** Parsing 'zone.tab', including the dedup and country names below */
+    public static final int PHASE_ZONE_TAB = 1;
+    /** Adding the Etc/GMT zones that aren't in 'zone.tab' */
+    public static final int PHASE_AVAILABLE_IDS = 2;
+    /**
+     * Looking for zones with the same rules in the same country. Runs once
+     * per zone within PHASE_ZONE_TAB and PHASE_AVAILABLE_IDS, so the time is
+     * summed up rather than traced.
+     */
+    public static final int PHASE_DEDUP = 3;
+    /** Looking up country display names. Nested in PHASE_ZONE_TAB. */
+    public static final int PHASE_COUNTRY_NAMES = 4;
+    /** Sorting the catalog */
+    public static final int PHASE_SORT = 5;
+    /** Building the id lookups */
+    public static final int PHASE_ID_INDEX = 6;
+    /** Applying the display name overrides from resources */
+    public static final int PHASE_DISPLAY_NAME_OVERRIDES = 7;
+    /** Display names, grouping by country and by offset */
+    public static final int PHASE_INDEX = 8;
+    /** Precomputing the search keys */
+    public static final int PHASE_SEARCH_KEYS = 9;
+
+    public static final int PHASE_COUNT = 10;
+
+    private static final String[] PHASE_NAMES = {
+            "backward", "zone.tab", "availableIds", "dedup", "countryNames", "sort",
+            "idIndex", "displayNameOverrides", "index", "searchKeys",
+    };
+    private static final String[] TRACE_SECTION_NAMES = new String[PHASE_COUNT];
+    static {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            TRACE_SECTION_NAMES[i] = "TimeZoneData." + PHASE_NAMES[i];
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called on the thread that created the TimeZoneData, once it is
+         * loaded.
+         */
+        void onTimeZonesLoaded(TimeZoneLoadMetrics metrics);
+    }
+
+    private final long[] mPhaseNanos;
+    private final long mTotalNanos;
+    private final int mZonesProcessed;
+    private final int mZonesDropped;
+    private final int mAliases;
+    private final int mCatalogSize;
+
+    private TimeZoneLoadMetrics(Recorder recorder, int catalogSize) {
+        mPhaseNanos = recorder.mPhaseNanos.clone();
+        mTotalNanos = System.nanoTime() - recorder.mStartNanos;
+        mZonesProcessed = recorder.mZonesProcessed;
+        mZonesDropped = recorder.mZonesDropped;
+        mAliases = recorder.mAliases;
+        mCatalogSize = catalogSize;
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * @return the time spent in the phase, in nanoseconds
+     */
+    public long getPhaseNanos(int phase) {
+        return mPhaseNanos[phase];
+    }
+
+    /**
+     * @return the time the whole load took, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    /**
+     * @return how many zones from 'zone.tab' and the available ids were
+     *         considered for the catalog
+     */
+    public int getZonesProcessed() {
+        return mZonesProcessed;
+    }
+
+    /**
+     * @return how many of the processed zones were left out, mostly because
+     *         another zone in the same country has the same rules
+     */
+    public int getZonesDropped() {
+        return mZonesDropped;
+    }
+
+    /**
+     * @return how many legacy ids the 'backward' file maps
+     */
+    public int getAliases() {
+        return mAliases;
+    }
+
+    /**
+     * @return how many time zones the catalog has
+     */
+    public int getCatalogSize() {
+        return mCatalogSize;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("total=").append(mTotalNanos / 1000).append("us");
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            sb.append(' ').append(PHASE_NAMES[i]).append('=').append(mPhaseNanos[i] / 1000)
+                    .append("us");
+        }
+        sb.append(" processed=").append(mZonesProcessed);
+        sb.append(" dropped=").append(mZonesDropped);
+        sb.append(" aliases=").append(mAliases);
+        sb.append(" size=").append(mCatalogSize);
+        return sb.toString();
+    }
+
+    /**
+     * Times the phases of one load. Phases may nest but must not overlap
+     * otherwise, since each one is also a trace section.
+     */
+    static class Recorder {
+        private static final boolean TRACE_SUPPORTED =
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+        final long mStartNanos = System.nanoTime();
+        final long[] mPhaseNanos = new long[PHASE_COUNT];
+        private final long[] mPhaseStartNanos = new long[PHASE_COUNT];
+        int mZonesProcessed;
+        int mZonesDropped;
+        int mAliases;
+
+        void beginPhase(int phase) {
+            if (TRACE_SUPPORTED) {
+                Trace.beginSection(TRACE_SECTION_NAMES[phase]);
+            }
+            mPhaseStartNanos[phase] = System.nanoTime();
+        }
+
+        void endPhase(int phase) {
+            mPhaseNanos[phase] += System.nanoTime() - mPhaseStartNanos[phase];
+            if (TRACE_SUPPORTED) {
+                Trace.endSection();
+            }
+        }
+
+        /**
+         * Adds time to a phase without a trace section, for work that is
+         * spread over many short calls.
+         */
+        void addPhaseNanos(int phase, long nanos) {
+            mPhaseNanos[phase] += nanos;
+        }
+
+        TimeZoneLoadMetrics finish(int catalogSize) {
+            return new TimeZoneLoadMetrics(this, catalogSize);
+        }
+    }
+}
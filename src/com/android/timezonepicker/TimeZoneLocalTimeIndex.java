@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.text.format.DateUtils;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.TimeZone;
+
+/**
+ * Index from the local minute-of-day to the time zones of a
+ * {@link TimeZoneData}.
+ *
+ * The time zones are bucketed by their GMT offset in minutes at the
+ * reference time. The local minute-of-day of a bucket is the UTC
+ * minute-of-day plus the offset. When the reference minute changes, the
+ * offsets of all zones are computed again, the same way as when building,
+ * and only the zones whose offset changed are moved to another bucket.
+ */
+class TimeZoneLocalTimeIndex {
+    private static final String TAG = "TimeZoneLocalTimeIndex";
+    private static final boolean DEBUG = false;
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final TimeZone[] mTimeZones;
+    private final int[] mOffsetMinutes;
+    private final SparseArray<ArrayList<Integer>> mTimeZonesByOffsetMinutes =
+            new SparseArray<ArrayList<Integer>>();
+    private long mReferenceMinute;
+
+    TimeZoneLocalTimeIndex(TimeZoneData tzd, long referenceMillis) {
+        final int size = tzd.size();
+        mTimeZones = new TimeZone[size];
+        mOffsetMinutes = new int[size];
+        mReferenceMinute = referenceMillis / DateUtils.MINUTE_IN_MILLIS;
+
+        final long minuteMillis = mReferenceMinute * DateUtils.MINUTE_IN_MILLIS;
+        for (int i = 0; i < size; i++) {
+            mTimeZones[i] = tzd.get(i).mTz;
+            mOffsetMinutes[i] = offsetMinutes(mTimeZones[i], minuteMillis);
+            addToBucket(mOffsetMinutes[i], i);
+        }
+    }
+
+    /**
+     * Returns the catalog indices, in catalog order, of the time zones whose
+     * local time at referenceMillis is in [fromMinute, toMinute). The range
+     * may wrap around midnight.
+     */
+    synchronized ArrayList<Integer> find(int fromMinute, int toMinute, long referenceMillis) {
+        advanceTo(referenceMillis);
+
+        final int utcMinuteOfDay = floorMod(mReferenceMinute, MINUTES_PER_DAY);
+        final int windowLength = floorMod(toMinute - fromMinute, MINUTES_PER_DAY);
+
+        ArrayList<Integer> results = new ArrayList<Integer>();
+        int matchedBuckets = 0;
+        for (int i = 0; i < mTimeZonesByOffsetMinutes.size(); i++) {
+            int localMinute = floorMod(utcMinuteOfDay + mTimeZonesByOffsetMinutes.keyAt(i),
+                    MINUTES_PER_DAY);
+            if (floorMod(localMinute - fromMinute, MINUTES_PER_DAY) < windowLength) {
+                results.addAll(mTimeZonesByOffsetMinutes.valueAt(i));
+                matchedBuckets++;
+            }
+        }
+        // Each bucket is in catalog order, but the buckets may interleave
+        if (matchedBuckets > 1) {
+            Collections.sort(results);
+        }
+        return results;
+    }
+
+    private void advanceTo(long millis) {
+        final long minute = millis / DateUtils.MINUTE_IN_MILLIS;
+        if (minute == mReferenceMinute) {
+            return;
+        }
+        mReferenceMinute = minute;
+
+        final long referenceMillis = minute * DateUtils.MINUTE_IN_MILLIS;
+        for (int idx = 0; idx < mTimeZones.length; idx++) {
+            int offset = offsetMinutes(mTimeZones[idx], referenceMillis);
+            if (offset != mOffsetMinutes[idx]) {
+                if (DEBUG) {
+                    Log.d(TAG, mTimeZones[idx].getID() + " moved from " + mOffsetMinutes[idx]
+                            + " to " + offset);
+                }
+                mTimeZonesByOffsetMinutes.get(mOffsetMinutes[idx]).remove(Integer.valueOf(idx));
+                if (mTimeZonesByOffsetMinutes.get(mOffsetMinutes[idx]).isEmpty()) {
+                    mTimeZonesByOffsetMinutes.remove(mOffsetMinutes[idx]);
+                }
+                mOffsetMinutes[idx] = offset;
+                addToBucket(offset, idx);
+            }
+        }
+    }
+
+    private void addToBucket(int offsetMinutes, int idx) {
+        ArrayList<Integer> group = mTimeZonesByOffsetMinutes.get(offsetMinutes);
+        if (group == null) {
+            group = new ArrayList<Integer>();
+            mTimeZonesByOffsetMinutes.put(offsetMinutes, group);
+        }
+
+        // Keep each bucket in catalog order
+        int pos = group.size();
+        while (pos > 0 && group.get(pos - 1) > idx) {
+            pos--;
+        }
+        group.add(pos, idx);
+    }
+
+    private static int offsetMinutes(TimeZone tz, long millis) {
+        return (int) (tz.getOffset(millis) / DateUtils.MINUTE_IN_MILLIS);
+    }
+
+    private static int floorMod(long x, int y) {
+        int mod = (int) (x % y);
+        return mod < 0 ? mod + y : mod;
+    }
+}
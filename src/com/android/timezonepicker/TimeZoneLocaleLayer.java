@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.content.res.Resources;
+import android.util.Log;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The names of the time zones and countries of a {@link TimeZoneData} in one
+ * locale. The catalog itself, i.e. the time zones, their order and the
+ * indices over them, doesn't depend on the locale and is shared by all
+ * layers.
+ *
+ * Get one with {@link TimeZoneData#getLocaleLayer}.
+ */
+public final class TimeZoneLocaleLayer {
+    private static final String TAG = "TimeZoneLocaleLayer";
+
+    private final Locale mLocale;
+    /** By catalog index */
+    private final String[] mDisplayNames;
+    /** By catalog index. Null for time zones without a country. */
+    private final String[] mCountryNames;
+    private final HashMap<String, String> mCountryNamesByCode;
+
+    TimeZoneLocaleLayer(Locale locale, String[] displayNames, String[] countryNames,
+            HashMap<String, String> countryNamesByCode) {
+        mLocale = locale;
+        mDisplayNames = displayNames;
+        mCountryNames = countryNames;
+        mCountryNamesByCode = countryNamesByCode;
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * @return the display name of the time zone at the TimeZoneData index
+     */
+    public String getDisplayName(int index) {
+        return mDisplayNames[index];
+    }
+
+    /**
+     * @return the country name of the time zone at the TimeZoneData index, or
+     *         null
+     */
+    public String getCountryName(int index) {
+        return mCountryNames[index];
+    }
+
+    /**
+     * @return the name of the country with the ISO 3166 code, or null if the
+     *         catalog has no time zones in it
+     */
+    public String getCountryNameByCode(String countryCode) {
+        return mCountryNamesByCode.get(countryCode);
+    }
+
+    /**
+     * Looks up the names of the time zones of the catalog in the given
+     * locale.
+     *
+     * @param res resources for the locale, for the names the picker
+     *            overrides
+     */
+    static TimeZoneLocaleLayer build(TimeZoneData tzd, Resources res, Locale locale) {
+        final long start = System.currentTimeMillis();
+        final int size = tzd.size();
+        final Date date = new Date(tzd.getTime());
+
+        HashMap<String, String> overrides = new HashMap<String, String>();
+        String[] ids = res.getStringArray(R.array.timezone_rename_ids);
+        String[] labels = res.getStringArray(R.array.timezone_rename_labels);
+        for (int i = 0; i < Math.min(ids.length, labels.length); i++) {
+            overrides.put(ids[i], labels[i]);
+        }
+
+        final String[] displayNames = new String[size];
+        final String[] countryNames = new String[size];
+        final HashMap<String, String> countryNamesByCode = new HashMap<String, String>();
+        final CountryNameTable countryNameTable = CountryNameTable.get(res, locale);
+        for (int i = 0; i < size; i++) {
+            final TimeZoneInfo tzi = tzd.get(i);
+            final TimeZone tz = tzi.mTz;
+
+            String displayName = overrides.get(tzi.mTzId);
+            if (displayName == null) {
+                displayName = tz.getDisplayName(tz.inDaylightTime(date), TimeZone.LONG, locale);
+            }
+            displayNames[i] = displayName;
+
+            final String code = tzi.mCountryCode;
+            if (code == null) {
+                continue;
+            }
+            final String countryName = countryNameTable.get(code);
+            countryNamesByCode.put(code, countryName);
+            countryNames[i] = countryName;
+        }
+
+        Log.i(TAG, "Time to load time zone names for " + locale + " (ms): "
+                + (System.currentTimeMillis() - start));
+        return new TimeZoneLocaleLayer(locale, displayNames, countryNames, countryNamesByCode);
+    }
+}
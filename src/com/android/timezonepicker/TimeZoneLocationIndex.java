@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * k-d tree over the principal cities of the time zones in zone.tab, for
+ * finding the time zones nearest to a location.
+ *
+ * Cities are placed on the unit sphere in 3D, where the straight-line
+ * distance grows with the great-circle distance. That avoids special cases
+ * at the poles and the antimeridian.
+ *
+ * Several cities may belong to one catalog time zone, since zone.tab zones
+ * with the same rules as another zone in the country are dropped from the
+ * catalog. Lookups return each catalog time zone once.
+ */
+class TimeZoneLocationIndex {
+    private static final int DIMENSIONS = 3;
+
+    /** Coordinates of the points in tree order, DIMENSIONS per point */
+    private final float[] mCoordinates;
+    /** Catalog index of the points in tree order */
+    private final int[] mTimeZoneIndices;
+
+    /**
+     * @param latitudes degrees
+     * @param longitudes degrees
+     * @param timeZoneIndices catalog index of each city
+     */
+    TimeZoneLocationIndex(float[] latitudes, float[] longitudes, int[] timeZoneIndices,
+            int count) {
+        final float[] points = new float[count * DIMENSIONS];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            toUnitVector(latitudes[i], longitudes[i], points, i * DIMENSIONS);
+            order[i] = i;
+        }
+
+        build(order, 0, count, 0, points);
+
+        mCoordinates = new float[count * DIMENSIONS];
+        mTimeZoneIndices = new int[count];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(points, order[i] * DIMENSIONS, mCoordinates, i * DIMENSIONS,
+                    DIMENSIONS);
+            mTimeZoneIndices[i] = timeZoneIndices[order[i]];
+        }
+    }
+
+    int size() {
+        return mTimeZoneIndices.length;
+    }
+
+    /**
+     * Returns the catalog indices of the k time zones nearest to the given
+     * location, nearest first.
+     */
+    int[] findNearest(double latitude, double longitude, int k) {
+        if (k <= 0 || mTimeZoneIndices.length == 0) {
+            return new int[0];
+        }
+
+        float[] query = new float[DIMENSIONS];
+        toUnitVector(latitude, longitude, query, 0);
+
+        Nearest nearest = new Nearest(k);
+        search(0, mTimeZoneIndices.length, 0, query, nearest);
+
+        int[] result = new int[nearest.mSize];
+        System.arraycopy(nearest.mTimeZoneIndices, 0, result, 0, nearest.mSize);
+        return result;
+    }
+
+    /**
+     * The k best distinct time zones so far, sorted by distance.
+     */
+    private static class Nearest {
+        final float[] mDistances;
+        final int[] mTimeZoneIndices;
+        int mSize;
+
+        Nearest(int k) {
+            mDistances = new float[k];
+            mTimeZoneIndices = new int[k];
+        }
+
+        float worst() {
+            return mSize < mDistances.length ? Float.MAX_VALUE : mDistances[mSize - 1];
+        }
+
+        void offer(int timeZoneIndex, float distance) {
+            // A closer city of a time zone that is in already
+            for (int i = 0; i < mSize; i++) {
+                if (mTimeZoneIndices[i] == timeZoneIndex) {
+                    if (distance >= mDistances[i]) {
+                        return;
+                    }
+                    remove(i);
+                    break;
+                }
+            }
+
+            if (distance >= worst()) {
+                return;
+            }
+            int pos = mSize < mDistances.length ? mSize++ : mSize - 1;
+            while (pos > 0 && mDistances[pos - 1] > distance) {
+                mDistances[pos] = mDistances[pos - 1];
+                mTimeZoneIndices[pos] = mTimeZoneIndices[pos - 1];
+                pos--;
+            }
+            mDistances[pos] = distance;
+            mTimeZoneIndices[pos] = timeZoneIndex;
+        }
+
+        private void remove(int i) {
+            System.arraycopy(mDistances, i + 1, mDistances, i, mSize - i - 1);
+            System.arraycopy(mTimeZoneIndices, i + 1, mTimeZoneIndices, i, mSize - i - 1);
+            mSize--;
+        }
+    }
+
+    /**
+     * Each range [from, to) is a subtree whose root is the middle point,
+     * split on the axis depth % DIMENSIONS.
+     */
+    private void search(int from, int to, int depth, float[] query, Nearest nearest) {
+        if (from >= to) {
+            return;
+        }
+
+        final int mid = (from + to) >>> 1;
+        final int axis = depth % DIMENSIONS;
+        final int offset = mid * DIMENSIONS;
+
+        float distance = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            float diff = mCoordinates[offset + d] - query[d];
+            distance += diff * diff;
+        }
+        nearest.offer(mTimeZoneIndices[mid], distance);
+
+        final float diff = query[axis] - mCoordinates[offset + axis];
+        if (diff < 0) {
+            search(from, mid, depth + 1, query, nearest);
+            if (diff * diff < nearest.worst()) {
+                search(mid + 1, to, depth + 1, query, nearest);
+            }
+        } else {
+            search(mid + 1, to, depth + 1, query, nearest);
+            if (diff * diff < nearest.worst()) {
+                search(from, mid, depth + 1, query, nearest);
+            }
+        }
+    }
+
+    private static void build(Integer[] order, int from, int to, int depth,
+            final float[] points) {
+        if (to - from <= 1) {
+            return;
+        }
+
+        final int axis = depth % DIMENSIONS;
+        Arrays.sort(order, from, to, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return Float.compare(points[lhs * DIMENSIONS + axis],
+                        points[rhs * DIMENSIONS + axis]);
+            }
+        });
+
+        final int mid = (from + to) >>> 1;
+        build(order, from, mid, depth + 1, points);
+        build(order, mid + 1, to, depth + 1, points);
+    }
+
+    private static void toUnitVector(double latitude, double longitude, float[] out,
+            int offset) {
+        final double lat = Math.toRadians(latitude);
+        final double lon = Math.toRadians(longitude);
+        out[offset] = (float) (Math.cos(lat) * Math.cos(lon));
+        out[offset + 1] = (float) (Math.cos(lat) * Math.sin(lon));
+        out[offset + 2] = (float) Math.sin(lat);
+    }
+
+    /**
+     * Parses ISO 6709 coordinates as used in zone.tab, +-DDMM+-DDDMM or
+     * +-DDMMSS+-DDDMMSS, e.g. "+4852+00220" for Paris, from ASCII bytes.
+     *
+     * @param out receives the latitude and longitude in degrees
+     * @return false if buffer[from, to) isn't in that format
+     */
+    static boolean parseIso6709(byte[] buffer, int from, int to, float[] out) {
+        int split = -1;
+        for (int i = from + 1; i < to; i++) {
+            byte ch = buffer[i];
+            if (ch == '+' || ch == '-') {
+                split = i;
+                break;
+            }
+        }
+        if (split == -1) {
+            return false;
+        }
+
+        final float latitude = parseDegrees(buffer, from, split, 2);
+        final float longitude = parseDegrees(buffer, split, to, 3);
+        if (Float.isNaN(latitude) || Float.isNaN(longitude)) {
+            return false;
+        }
+        out[0] = latitude;
+        out[1] = longitude;
+        return true;
+    }
+
+    /**
+     * Parses a sign followed by degreeDigits digits of degrees, 2 of minutes
+     * and optionally 2 of seconds.
+     */
+    private static float parseDegrees(byte[] buffer, int from, int to, int degreeDigits) {
+        final int length = to - from - 1;
+        if (length != degreeDigits + 2 && length != degreeDigits + 4) {
+            return Float.NaN;
+        }
+
+        int degrees = 0;
+        int minutes = 0;
+        int seconds = 0;
+        int pos = from + 1;
+        for (int part = 0; pos < to; part++) {
+            int digits = part == 0 ? degreeDigits : 2;
+            int value = 0;
+            for (int i = 0; i < digits; i++, pos++) {
+                byte ch = buffer[pos];
+                if (ch < '0' || ch > '9') {
+                    return Float.NaN;
+                }
+                value = value * 10 + (ch - '0');
+            }
+            if (part == 0) {
+                degrees = value;
+            } else if (part == 1) {
+                minutes = value;
+            } else {
+                seconds = value;
+            }
+        }
+
+        float result = degrees + minutes / 60f + seconds / 3600f;
+        return buffer[from] == '-' ? -result : result;
+    }
+}
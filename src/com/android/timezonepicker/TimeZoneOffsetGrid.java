@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.text.format.DateUtils;
+
+import java.util.TimeZone;
+
+/**
+ * Fills grids of GMT offsets or local times of several time zones at evenly
+ * spaced instants, e.g. for a meeting planner.
+ *
+ * The offset of a zone only changes at its transitions, so instead of looking
+ * up every cell, a run of cells is filled from the offset at its ends when
+ * they agree and are at most {@link #MAX_CONSTANT_SPAN_MILLIS} apart. Runs
+ * that contain a transition are bisected until the transition is found.
+ * Filling allocates nothing.
+ */
+class TimeZoneOffsetGrid {
+    /**
+     * Runs up to this long whose ends have the same offset are taken to have
+     * no transition in between. Zones don't change offset twice in a day.
+     */
+    static final long MAX_CONSTANT_SPAN_MILLIS = DateUtils.DAY_IN_MILLIS;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private TimeZoneOffsetGrid() {
+    }
+
+    /**
+     * Fills out[outOffset, outOffset + count) with the zone's offset in
+     * minutes, or with the local minute of the day if minuteOfDay, at
+     * startMillis + i * stepMillis.
+     */
+    static void fill(TimeZone tz, long startMillis, long stepMillis, int count,
+            boolean minuteOfDay, int[] out, int outOffset) {
+        if (count <= 0) {
+            return;
+        }
+
+        final int first = tz.getOffset(startMillis);
+        if (count == 1) {
+            setCell(out, outOffset, startMillis, first, minuteOfDay);
+            return;
+        }
+        final int last = tz.getOffset(startMillis + (count - 1) * stepMillis);
+        fillRange(tz, startMillis, stepMillis, 0, count - 1, first, last, minuteOfDay, out,
+                outOffset);
+    }
+
+    /**
+     * Fills cells lo to hi, inclusive, whose offsets are offsetLo and
+     * offsetHi.
+     */
+    private static void fillRange(TimeZone tz, long startMillis, long stepMillis, int lo,
+            int hi, int offsetLo, int offsetHi, boolean minuteOfDay, int[] out, int outOffset) {
+        if (offsetLo == offsetHi && (long) (hi - lo) * stepMillis <= MAX_CONSTANT_SPAN_MILLIS) {
+            for (int i = lo; i <= hi; i++) {
+                setCell(out, outOffset + i, startMillis + i * stepMillis, offsetLo, minuteOfDay);
+            }
+            return;
+        }
+        if (hi - lo <= 1) {
+            setCell(out, outOffset + lo, startMillis + lo * stepMillis, offsetLo, minuteOfDay);
+            setCell(out, outOffset + hi, startMillis + hi * stepMillis, offsetHi, minuteOfDay);
+            return;
+        }
+
+        final int mid = (lo + hi) >>> 1;
+        final int offsetMid = tz.getOffset(startMillis + mid * stepMillis);
+        fillRange(tz, startMillis, stepMillis, lo, mid, offsetLo, offsetMid, minuteOfDay, out,
+                outOffset);
+        fillRange(tz, startMillis, stepMillis, mid, hi, offsetMid, offsetHi, minuteOfDay, out,
+                outOffset);
+    }
+
+    private static void setCell(int[] out, int pos, long millis, int offset,
+            boolean minuteOfDay) {
+        if (minuteOfDay) {
+            long localMinute = (millis + offset) / DateUtils.MINUTE_IN_MILLIS;
+            if (millis + offset < 0 && (millis + offset) % DateUtils.MINUTE_IN_MILLIS != 0) {
+                localMinute--;
+            }
+            int mod = (int) (localMinute % MINUTES_PER_DAY);
+            out[pos] = mod < 0 ? mod + MINUTES_PER_DAY : mod;
+        } else {
+            out[pos] = (int) (offset / DateUtils.MINUTE_IN_MILLIS);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import android.view.Window;
 import android.view.WindowManager;
 
 import androidx.fragment.app.DialogFragment;
+import androidx.lifecycle.ViewModelProvider;
 
 public class TimeZonePickerDialog extends DialogFragment implements
         TimeZonePickerView.OnTimeZoneSetListener {
@@ -42,6 +43,8 @@ public class TimeZonePickerDialog extends DialogFragment implements
     private OnTimeZoneSetListener mTimeZoneSetListener;
     private TimeZonePickerView mView;
     private boolean mHasCachedResults = false;
+    private TimeZonePickerPrewarm mPrewarm;
+    private TimeZonePickerViewModel mViewModel;
 
     public interface OnTimeZoneSetListener {
         void onTimeZoneSet(TimeZoneInfo tzi);
@@ -51,6 +54,15 @@ public class TimeZonePickerDialog extends DialogFragment implements
         mTimeZoneSetListener = l;
     }
 
+    /**
+     * Uses the catalog built by the given pre-warm if it is ready when the
+     * dialog is shown. Without this, the latest pre-warm started for the
+     * activity or the application is used if it matches the arguments.
+     */
+    public void setPrewarm(TimeZonePickerPrewarm prewarm) {
+        mPrewarm = prewarm;
+    }
+
     public TimeZonePickerDialog() {
         super();
     }
@@ -70,9 +82,29 @@ public class TimeZonePickerDialog extends DialogFragment implements
         if (savedInstanceState != null) {
             hideFilterSearch = savedInstanceState.getBoolean(KEY_HIDE_FILTER_SEARCH);
         }
-        mView = new TimeZonePickerView(getActivity(), null, timeZone, timeMillis, this,
-                hideFilterSearch);
-        if (savedInstanceState != null && savedInstanceState.getBoolean(KEY_HAS_RESULTS, false)) {
+        // Survives configuration changes, so a rotated dialog doesn't load the
+        // catalog or filter again
+        mViewModel = new ViewModelProvider(this).get(TimeZonePickerViewModel.class);
+        TimeZoneQueryEngine engine = mViewModel.getEngine(timeZone, timeMillis);
+        if (engine == null && mPrewarm != null) {
+            engine = mPrewarm.getIfReady(timeZone, timeMillis);
+        }
+        if (engine == null) {
+            engine = TimeZonePickerPrewarm.getLatestIfReady(getActivity(), timeZone,
+                    timeMillis);
+        }
+        if (engine == null) {
+            // The catalog outlives the activity, so it must not hold on to it
+            engine = TimeZonePickerView.getEngine(getActivity().getApplicationContext(),
+                    timeZone, timeMillis);
+        }
+        mViewModel.setEngine(engine, timeZone, timeMillis);
+
+        final boolean restore = mViewModel.hasFilterResults();
+        mView = new TimeZonePickerView(getActivity(), null, engine, this, hideFilterSearch,
+                restore ? mViewModel : null);
+        if (!restore && savedInstanceState != null
+                && savedInstanceState.getBoolean(KEY_HAS_RESULTS, false)) {
             mView.showFilterResults(savedInstanceState.getInt(KEY_LAST_FILTER_TYPE),
                                     savedInstanceState.getString(KEY_LAST_FILTER_STRING),
                                     savedInstanceState.getInt(KEY_LAST_FILTER_TIME));
@@ -80,6 +112,17 @@ public class TimeZonePickerDialog extends DialogFragment implements
         return mView;
     }
 
+    @Override
+    public void onDestroyView() {
+        if (mView != null && mViewModel != null) {
+            // The picker may have switched to a catalog reloaded for a new device time zone
+            mViewModel.setEngine(mView.getEngine(), mViewModel.getTimeZone(),
+                    mViewModel.getTimeMillis());
+            mViewModel.saveFilterResults(mView);
+        }
+        super.onDestroyView();
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
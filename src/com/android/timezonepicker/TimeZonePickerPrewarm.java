@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.WeakHashMap;
+
+/**
+ * Builds the time zone catalog before the picker is shown.
+ *
+ * Call {@link #start} as soon as it is likely that the user will open the
+ * picker, e.g. when the event edit screen opens. The catalog, the search
+ * indices, the recent time zones and the labels of the first rows are built
+ * on a background thread. {@link TimeZonePickerDialog} and
+ * {@link TimeZonePickerView} pick up the result if it was started for their
+ * context, or the application, and is ready and matches their time zone and
+ * time; otherwise they build the catalog themselves.
+ */
+public final class TimeZonePickerPrewarm {
+    private static final String TAG = "TimeZonePickerPrewarm";
+    private static final boolean DEBUG = false;
+
+    /**
+     * The latest pre-warm started for each context, used by pickers that
+     * weren't handed one. Guarded by the class.
+     */
+    private static final WeakHashMap<Context, TimeZonePickerPrewarm> sLatest =
+            new WeakHashMap<Context, TimeZonePickerPrewarm>();
+
+    private final Context mContext;
+    private final String mTimeZone;
+    private final long mTimeMillis;
+    private final Locale mLocale;
+    private volatile TimeZoneQueryEngine mEngine;
+
+    private TimeZonePickerPrewarm(Context context, String timeZone, long timeMillis) {
+        mContext = context;
+        mTimeZone = timeZone;
+        mTimeMillis = timeMillis;
+        mLocale = Locale.getDefault();
+    }
+
+    /**
+     * Starts building the catalog on a background thread. Pickers created
+     * with the same context, or any context if this is the application, use
+     * it.
+     *
+     * @param timeZone the time zone the picker will be opened with, as in
+     *            {@link TimeZonePickerDialog#BUNDLE_TIME_ZONE}
+     * @param timeMillis the time the picker will be opened with, as in
+     *            {@link TimeZonePickerDialog#BUNDLE_START_TIME_MILLIS}
+     * @return a handle to pass to the picker
+     */
+    public static TimeZonePickerPrewarm start(Context context, String timeZone,
+            long timeMillis) {
+        final TimeZonePickerPrewarm prewarm = new TimeZonePickerPrewarm(
+                context.getApplicationContext(), timeZone, timeMillis);
+        synchronized (TimeZonePickerPrewarm.class) {
+            sLatest.put(context, prewarm);
+        }
+
+        RecentTimeZoneStore.getInstance(context).startLoading();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                prewarm.build();
+            }
+        });
+        return prewarm;
+    }
+
+    /**
+     * @return the catalog of the latest pre-warm for context, or else for
+     *         its application, if it is ready and matches, or null
+     */
+    static TimeZoneQueryEngine getLatestIfReady(Context context, String timeZone,
+            long timeMillis) {
+        TimeZonePickerPrewarm latest;
+        synchronized (TimeZonePickerPrewarm.class) {
+            latest = sLatest.get(context);
+            if (latest == null) {
+                latest = sLatest.get(context.getApplicationContext());
+            }
+        }
+        return latest == null ? null : latest.getIfReady(timeZone, timeMillis);
+    }
+
+    public boolean isReady() {
+        return mEngine != null;
+    }
+
+    /**
+     * @return the catalog if it has been built for the given time zone and
+     *         time and the locale hasn't changed since, or null
+     */
+    TimeZoneQueryEngine getIfReady(String timeZone, long timeMillis) {
+        final TimeZoneQueryEngine engine = mEngine;
+        if (engine == null || !TextUtils.equals(timeZone, mTimeZone)
+                || timeMillis != mTimeMillis || !mLocale.equals(Locale.getDefault())) {
+            if (DEBUG) {
+                Log.d(TAG, "Not using pre-warmed catalog, ready=" + (engine != null));
+            }
+            return null;
+        }
+        return engine;
+    }
+
+    private void build() {
+        TimeZoneData tzd = new TimeZoneData(mContext, mTimeZone, mTimeMillis);
+        TimeZoneQueryEngine engine = new TimeZoneQueryEngine(tzd);
+
+        // Built lazily on the first search otherwise
+        tzd.getFuzzyIndex();
+        tzd.getLocalTimeIndex();
+
+        // The labels of the rows shown first: the default and recent time zones
+        int defaultIndex = tzd.getDefaultTimeZoneIndex();
+        if (defaultIndex != -1) {
+            tzd.get(defaultIndex).getGmtDisplayName(mContext);
+        }
+        // Started reading in start(), normally done by now
+        RecentTimeZoneStore recents = RecentTimeZoneStore.getInstance(mContext);
+        if (recents.awaitLoaded()) {
+            for (int index : recents.getTimeZoneIndices(tzd)) {
+                tzd.get(index).getGmtDisplayName(mContext);
+            }
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Pre-warmed " + tzd.size() + " time zones");
+        }
+        mEngine = engine;
+    }
+}
@@ -21,14 +21,22 @@ import android.content.res.Resources;
 import android.os.Build;
 import android.text.Spannable;
 import android.text.Spannable.Factory;
+import android.text.SpannedString;
 import android.text.format.DateUtils;
-import android.text.format.Time;
 import android.text.style.ForegroundColorSpan;
 import android.util.Log;
+import android.util.LruCache;
 
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Formats time zone display names. Can be used from several threads at the
+ * same time.
+ */
 public class TimeZonePickerUtils {
     private static final String TAG = "TimeZonePickerUtils";
 
@@ -36,9 +44,60 @@ public class TimeZonePickerUtils {
     public static final int DST_SYMBOL_COLOR = 0xFFBFBFBF;
     private static final Factory mSpannableFactory = Spannable.Factory.getInstance();
 
-    private Locale mDefaultLocale;
-    private String[] mOverrideIds;
-    private String[] mOverrideLabels;
+    /** How many display names are kept */
+    private static final int DISPLAY_NAME_CACHE_SIZE = 64;
+
+    private volatile Locale mDefaultLocale;
+    /** Time zone id -> display name to use instead of the default one. Replaced, not modified. */
+    private volatile HashMap<String, String> mOverrides;
+
+    /**
+     * Display names by what they are made of. Keyed by the offset rather than
+     * the time, so that all the times between two transitions share one. The
+     * names are immutable; callers get a copy they may modify.
+     */
+    private final LruCache<DisplayNameKey, SpannedString> mDisplayNames =
+            new LruCache<DisplayNameKey, SpannedString>(DISPLAY_NAME_CACHE_SIZE);
+    /** getTimeZone() returns a new copy every time */
+    private final ConcurrentHashMap<String, TimeZone> mTimeZones =
+            new ConcurrentHashMap<String, TimeZone>();
+
+    private static final class DisplayNameKey {
+        final String id;
+        final boolean daylightTime;
+        final int gmtOffset;
+        final Locale locale;
+        final boolean grayGmt;
+
+        DisplayNameKey(String id, boolean daylightTime, int gmtOffset, Locale locale,
+                boolean grayGmt) {
+            this.id = id;
+            this.daylightTime = daylightTime;
+            this.gmtOffset = gmtOffset;
+            this.locale = locale;
+            this.grayGmt = grayGmt;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DisplayNameKey)) {
+                return false;
+            }
+            DisplayNameKey other = (DisplayNameKey) o;
+            return id.equals(other.id) && daylightTime == other.daylightTime
+                    && gmtOffset == other.gmtOffset && locale.equals(other.locale)
+                    && grayGmt == other.grayGmt;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = id.hashCode();
+            hash = 31 * hash + gmtOffset;
+            hash = 31 * hash + locale.hashCode();
+            hash = 31 * hash + (daylightTime ? 1 : 0);
+            return 31 * hash + (grayGmt ? 1 : 0);
+        }
+    }
 
     /**
      * This needs to be an instantiated class so that it doesn't need to continuously re-load the
@@ -64,11 +123,35 @@ public class TimeZonePickerUtils {
      */
     public CharSequence getGmtDisplayName(Context context, String id, long millis,
              boolean grayGmt) {
-        TimeZone timezone = TimeZone.getTimeZone(id);
-        if (timezone == null) {
-            return null;
+        checkLocale(context);
+        return copyOf(getCachedGmtDisplayName(id, millis, grayGmt));
+    }
+
+    /**
+     * Like {@link #getGmtDisplayName} for many time zones at the same time,
+     * e.g. for the events of an agenda. Time zones that appear more than once
+     * are only looked up once.
+     *
+     * @return the display name of each id
+     */
+    public CharSequence[] getGmtDisplayNames(Context context, String[] ids, long millis,
+            boolean grayGmt) {
+        checkLocale(context);
+        final CharSequence[] names = new CharSequence[ids.length];
+        String lastId = null;
+        SpannedString lastName = null;
+        for (int i = 0; i < ids.length; i++) {
+            // Events in the same time zone are often next to each other
+            if (ids[i] != null && !ids[i].equals(lastId)) {
+                lastName = getCachedGmtDisplayName(ids[i], millis, grayGmt);
+            }
+            lastId = ids[i];
+            names[i] = ids[i] == null ? null : copyOf(lastName);
         }
+        return names;
+    }
 
+    private void checkLocale(Context context) {
         final Locale defaultLocale = Locale.getDefault();
         if (!defaultLocale.equals(mDefaultLocale)) {
             // If the IDs and labels haven't been set yet, or if the locale has been changed
@@ -76,20 +159,43 @@ public class TimeZonePickerUtils {
             mDefaultLocale = defaultLocale;
             cacheOverrides(context);
         }
-        return buildGmtDisplayName(timezone, millis, grayGmt);
     }
 
-    private CharSequence buildGmtDisplayName(TimeZone tz, long timeMillis, boolean grayGmt) {
-        Time time = new Time(tz.getID());
-        time.set(timeMillis);
+    private static Spannable copyOf(SpannedString name) {
+        return name == null ? null : mSpannableFactory.newSpannable(name);
+    }
+
+    private SpannedString getCachedGmtDisplayName(String id, long millis, boolean grayGmt) {
+        TimeZone timezone = mTimeZones.get(id);
+        if (timezone == null) {
+            timezone = TimeZone.getTimeZone(id);
+            if (timezone == null) {
+                return null;
+            }
+            mTimeZones.put(id, timezone);
+        }
 
+        // Sharing a TimeZone between threads is fine, nothing calls its setters
+        final DisplayNameKey key = new DisplayNameKey(id,
+                timezone.inDaylightTime(new Date(millis)), timezone.getOffset(millis),
+                mDefaultLocale, grayGmt);
+
+        SpannedString name = mDisplayNames.get(key);
+        if (name == null) {
+            name = buildGmtDisplayName(timezone, key.daylightTime, key.gmtOffset, grayGmt);
+            mDisplayNames.put(key, name);
+        }
+        return name;
+    }
+
+    private SpannedString buildGmtDisplayName(TimeZone tz, boolean daylightTime, int gmtOffset,
+            boolean grayGmt) {
         StringBuilder sb = new StringBuilder();
 
-        String displayName = getDisplayName(tz, time.isDst != 0);
+        String displayName = getDisplayName(tz, daylightTime);
         sb.append(displayName);
 
         sb.append("  ");
-        final int gmtOffset = tz.getOffset(timeMillis);
         int gmtStart = sb.length();
         appendGmtOffset(sb, gmtOffset);
         int gmtEnd = sb.length();
@@ -114,8 +220,7 @@ public class TimeZonePickerUtils {
                     symbolStart, symbolEnd, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         }
 
-        CharSequence gmtDisplayName = spannableText;
-        return gmtDisplayName;
+        return new SpannedString(spannableText);
     }
 
     public static void appendGmtOffset(StringBuilder sb, final int gmtOffset) {
@@ -159,20 +264,10 @@ public class TimeZonePickerUtils {
      * from R.arrays.
      */
     private String getDisplayName(TimeZone tz, boolean daylightTime) {
-        if (mOverrideIds == null || mOverrideLabels == null) {
-            // Just in case they somehow didn't get loaded correctly.
-            return tz.getDisplayName(daylightTime, TimeZone.LONG, Locale.getDefault());
-        }
-
-        for (int i = 0; i < mOverrideIds.length; i++) {
-            if (tz.getID().equals(mOverrideIds[i])) {
-                if (mOverrideLabels.length > i) {
-                    return mOverrideLabels[i];
-                }
-                Log.e(TAG, "timezone_rename_ids len=" + mOverrideIds.length +
-                        " timezone_rename_labels len=" + mOverrideLabels.length);
-                break;
-            }
+        final HashMap<String, String> overrides = mOverrides;
+        String override = overrides == null ? null : overrides.get(tz.getID());
+        if (override != null) {
+            return override;
         }
 
         // If the ID doesn't need to have the display name overridden, or if the labels were
@@ -182,7 +277,18 @@ public class TimeZonePickerUtils {
 
     private void cacheOverrides(Context context) {
         Resources res = context.getResources();
-        mOverrideIds = res.getStringArray(R.array.timezone_rename_ids);
-        mOverrideLabels = res.getStringArray(R.array.timezone_rename_labels);
+        String[] ids = res.getStringArray(R.array.timezone_rename_ids);
+        String[] labels = res.getStringArray(R.array.timezone_rename_labels);
+        if (ids.length != labels.length) {
+            Log.e(TAG, "timezone_rename_ids len=" + ids.length +
+                    " timezone_rename_labels len=" + labels.length);
+        }
+
+        final int length = Math.min(ids.length, labels.length);
+        HashMap<String, String> overrides = new HashMap<String, String>(length * 2);
+        for (int i = 0; i < length; i++) {
+            overrides.put(ids[i], labels[i]);
+        }
+        mOverrides = overrides;
     }
 }
@@ -22,8 +22,10 @@ import android.text.Editable;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.TextWatcher;
+import android.text.format.DateUtils;
 import android.text.style.ImageSpan;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -38,6 +40,10 @@ import android.widget.ListView;
 public class TimeZonePickerView extends LinearLayout implements TextWatcher, OnItemClickListener,
     OnClickListener {
     private static final String TAG = "TimeZonePickerView";
+    private static final boolean DEBUG = false;
+
+    /** How late after the minute the local times are updated */
+    private static final long MINUTE_TICK_SLACK_MILLIS = 50;
 
     private Context mContext;
     private AutoCompleteTextView mAutoCompleteTextView;
@@ -47,6 +53,21 @@ public class TimeZonePickerView extends LinearLayout implements TextWatcher, OnI
     TimeZoneResultAdapter mResultAdapter;
 
     private ImageButton mClearButton;
+    private ListView mTimeZoneList;
+    private OnTimeZoneSetListener mTimeZoneSetListener;
+    private TimeZoneCatalogReloader mReloader;
+
+    /** Updates the local times in the list at the start of every minute */
+    private final Runnable mMinuteTick = new Runnable() {
+        @Override
+        public void run() {
+            int updated = mResultAdapter.updateTimeTexts(mTimeZoneList);
+            if (DEBUG) {
+                Log.d(TAG, "Minute tick updated " + updated + " rows");
+            }
+            scheduleMinuteTick();
+        }
+    };
 
     public interface OnTimeZoneSetListener {
         void onTimeZoneSet(TimeZoneInfo tzi);
@@ -55,6 +76,24 @@ public class TimeZonePickerView extends LinearLayout implements TextWatcher, OnI
     public TimeZonePickerView(Context context, AttributeSet attrs,
             String timeZone, long timeMillis, OnTimeZoneSetListener l,
             boolean hideFilterSearch) {
+        this(context, attrs, getEngine(context, timeZone, timeMillis), l, hideFilterSearch);
+    }
+
+    /**
+     * Creates a picker for a catalog that has been built already, e.g. by
+     * {@link TimeZonePickerPrewarm}.
+     */
+    public TimeZonePickerView(Context context, AttributeSet attrs,
+            TimeZoneQueryEngine engine, OnTimeZoneSetListener l, boolean hideFilterSearch) {
+        this(context, attrs, engine, l, hideFilterSearch, null);
+    }
+
+    /**
+     * @param saved the time zones a picker with the same catalog listed, to
+     *            list again right away, or null to list the default ones
+     */
+    TimeZonePickerView(Context context, AttributeSet attrs, TimeZoneQueryEngine engine,
+            OnTimeZoneSetListener l, boolean hideFilterSearch, TimeZonePickerViewModel saved) {
         super(context, attrs);
         mContext = context;
         LayoutInflater inflater = (LayoutInflater) context.getSystemService(
@@ -62,17 +101,29 @@ public class TimeZonePickerView extends LinearLayout implements TextWatcher, OnI
         inflater.inflate(R.layout.timezonepickerview, this, true);
 
         mHideFilterSearchOnStart = hideFilterSearch;
+        mTimeZoneSetListener = l;
 
-        TimeZoneData tzd = new TimeZoneData(mContext, timeZone, timeMillis);
-
-        mResultAdapter = new TimeZoneResultAdapter(mContext, tzd, l);
-        ListView timeZoneList = (ListView) findViewById(R.id.timezonelist);
-        timeZoneList.setAdapter(mResultAdapter);
-        timeZoneList.setOnItemClickListener(mResultAdapter);
+        mTimeZoneList = (ListView) findViewById(R.id.timezonelist);
+        mAutoCompleteTextView = (AutoCompleteTextView) findViewById(R.id.searchBox);
+        setAdapters(engine, saved);
+        mReloader = new TimeZoneCatalogReloader(context, engine,
+                new TimeZoneCatalogReloader.Listener() {
+                    @Override
+                    public void onCatalogReloaded(TimeZoneQueryEngine engine) {
+                        setAdapters(engine, null);
+                    }
+                });
 
-        mFilterAdapter = new TimeZoneFilterTypeAdapter(mContext, tzd, mResultAdapter);
+        RecentTimeZoneStore recents = RecentTimeZoneStore.getInstance(context);
+        if (!recents.isLoaded()) {
+            recents.runWhenLoaded(new Runnable() {
+                @Override
+                public void run() {
+                    mFilterAdapter.setRecentTimeZones(mResultAdapter.getRecentTimeZoneIndices());
+                }
+            });
+        }
 
-        mAutoCompleteTextView = (AutoCompleteTextView) findViewById(R.id.searchBox);
         mAutoCompleteTextView.addTextChangedListener(this);
         mAutoCompleteTextView.setOnItemClickListener(this);
         mAutoCompleteTextView.setOnClickListener(this);
@@ -87,12 +138,95 @@ public class TimeZonePickerView extends LinearLayout implements TextWatcher, OnI
         });
     }
 
+    /**
+     * Creates the adapters for a catalog. If there are adapters already, the
+     * time zones they list are listed again from the new catalog.
+     *
+     * @param saved results to restore, see {@link TimeZonePickerViewModel}
+     */
+    private void setAdapters(TimeZoneQueryEngine engine, TimeZonePickerViewModel saved) {
+        final TimeZoneResultAdapter oldResultAdapter = mResultAdapter;
+        mResultAdapter = new TimeZoneResultAdapter(mContext, engine, mTimeZoneSetListener,
+                oldResultAdapter == null && saved == null);
+        if (saved != null) {
+            mResultAdapter.restoreFilter(saved.getFilterType(), saved.getFilterString(),
+                    saved.getFilterTime(), saved.getFilterResults(), saved.getFilterRows());
+        } else if (oldResultAdapter != null) {
+            mResultAdapter.onSetFilter(oldResultAdapter.getLastFilterType(),
+                    oldResultAdapter.getLastFilterString(), oldResultAdapter.getLastFilterTime());
+        }
+        mTimeZoneList.setAdapter(mResultAdapter);
+        mTimeZoneList.setOnItemClickListener(mResultAdapter);
+
+        mFilterAdapter = new TimeZoneFilterTypeAdapter(mContext, engine, mResultAdapter);
+        mFilterAdapter.setRecentTimeZones(mResultAdapter.getRecentTimeZoneIndices());
+        if (mAutoCompleteTextView.getAdapter() != null) {
+            mAutoCompleteTextView.setAdapter(mFilterAdapter);
+        }
+    }
+
+    /**
+     * @return the catalog listed, which changes when the device's time zone
+     *         changes while the picker is open for it
+     */
+    TimeZoneQueryEngine getEngine() {
+        return mReloader.getEngine();
+    }
+
+    /**
+     * Returns the pre-warmed catalog if there is a matching one, or builds it.
+     */
+    static TimeZoneQueryEngine getEngine(Context context, String timeZone,
+            long timeMillis) {
+        TimeZoneQueryEngine engine = TimeZonePickerPrewarm.getLatestIfReady(context, timeZone,
+                timeMillis);
+        if (engine == null) {
+            engine = new TimeZoneQueryEngine(new TimeZoneData(context, timeZone, timeMillis));
+        }
+        return engine;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        scheduleMinuteTick();
+        mReloader.register();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(mMinuteTick);
+        mReloader.unregister();
+        super.onDetachedFromWindow();
+    }
+
+    private void scheduleMinuteTick() {
+        removeCallbacks(mMinuteTick);
+        final long now = System.currentTimeMillis();
+        postDelayed(mMinuteTick, DateUtils.MINUTE_IN_MILLIS - now % DateUtils.MINUTE_IN_MILLIS
+                + MINUTE_TICK_SLACK_MILLIS);
+    }
+
     public void showFilterResults(int type, String string, int time) {
         if (mResultAdapter != null) {
             mResultAdapter.onSetFilter(type, string, time);
         }
     }
 
+    /**
+     * @return the TimeZoneData indices of the time zones listed, in order
+     */
+    int[] getFilterResults() {
+        return mResultAdapter.getFilteredTimeZoneIndices();
+    }
+
+    /**
+     * @return the rows listed, in order
+     */
+    TimeZoneRow[] getFilterRows() {
+        return mResultAdapter.getRows();
+    }
+
     public boolean hasResults() {
         return mResultAdapter != null && mResultAdapter.hasResults();
     }
@@ -106,7 +240,7 @@ public class TimeZonePickerView extends LinearLayout implements TextWatcher, OnI
     }
 
     public int getLastFilterTime() {
-        return mResultAdapter != null ? mResultAdapter.getLastFilterType() : -1;
+        return mResultAdapter != null ? mResultAdapter.getLastFilterTime() : -1;
     }
 
     public boolean getHideFilterSearchOnStart() {
@@ -175,6 +309,6 @@ public class TimeZonePickerView extends LinearLayout implements TextWatcher, OnI
             mAutoCompleteTextView.setAdapter(mFilterAdapter);
         }
         mHideFilterSearchOnStart = false;
-        mFilterAdapter.getFilter().filter(string);
+        mFilterAdapter.filter(string);
     }
 }
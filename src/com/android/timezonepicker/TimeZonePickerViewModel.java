@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.text.TextUtils;
+
+import androidx.lifecycle.ViewModel;
+
+/**
+ * What {@link TimeZonePickerDialog} keeps across configuration changes: the
+ * catalog with its search indices, and the time zones listed with their
+ * rows. A rotated dialog shows them again, in its first frame, without
+ * loading, filtering or building rows.
+ *
+ * Public only so that ViewModelProvider can create it.
+ */
+public class TimeZonePickerViewModel extends ViewModel {
+    private TimeZoneQueryEngine mEngine;
+    private String mTimeZone;
+    private long mTimeMillis;
+
+    private boolean mHasFilterResults;
+    private int mFilterType;
+    private String mFilterString;
+    private int mFilterTime;
+    private int[] mFilterResults;
+    private TimeZoneRow[] mFilterRows;
+
+    public TimeZonePickerViewModel() {
+    }
+
+    /**
+     * @return the catalog kept for the given time zone and time, or null
+     */
+    TimeZoneQueryEngine getEngine(String timeZone, long timeMillis) {
+        if (mEngine == null || !TextUtils.equals(timeZone, mTimeZone)
+                || timeMillis != mTimeMillis) {
+            return null;
+        }
+        return mEngine;
+    }
+
+    void setEngine(TimeZoneQueryEngine engine, String timeZone, long timeMillis) {
+        if (engine != mEngine) {
+            mHasFilterResults = false;
+        }
+        mEngine = engine;
+        mTimeZone = timeZone;
+        mTimeMillis = timeMillis;
+    }
+
+    String getTimeZone() {
+        return mTimeZone;
+    }
+
+    long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    boolean hasFilterResults() {
+        return mHasFilterResults;
+    }
+
+    int getFilterType() {
+        return mFilterType;
+    }
+
+    String getFilterString() {
+        return mFilterString;
+    }
+
+    int getFilterTime() {
+        return mFilterTime;
+    }
+
+    int[] getFilterResults() {
+        return mFilterResults;
+    }
+
+    TimeZoneRow[] getFilterRows() {
+        return mFilterRows;
+    }
+
+    void saveFilterResults(TimeZonePickerView view) {
+        mHasFilterResults = true;
+        mFilterType = view.getLastFilterType();
+        mFilterString = view.getLastFilterString();
+        mFilterTime = view.getLastFilterTime();
+        mFilterResults = view.getFilterResults();
+        mFilterRows = view.getFilterRows();
+    }
+}
@@ -0,0 +1,795 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.util.Log;
+
+import java.text.DateFormatSymbols;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time zone search over a {@link TimeZoneData}, without any UI.
+ *
+ * {@link #suggest} turns what the user typed into filters: GMT offsets, local
+ * times and countries. {@link #getTimeZones} lists the time zones of a filter.
+ * Requests and responses are immutable and the engine keeps no per-query
+ * state, so it can be called from any number of threads at once.
+ */
+public class TimeZoneQueryEngine {
+    private static final String TAG = "TimeZoneQueryEngine";
+    private static final boolean DEBUG = false;
+
+    public static final int FILTER_TYPE_EMPTY = -1;
+    public static final int FILTER_TYPE_NONE = 0;
+    public static final int FILTER_TYPE_COUNTRY = 1;
+    public static final int FILTER_TYPE_STATE = 2;
+    public static final int FILTER_TYPE_GMT = 3;
+    public static final int FILTER_TYPE_LOCAL_TIME = 4;
+
+    /**
+     * Fuzzy matching only kicks in when exact prefix, word and initials
+     * matching give fewer countries than this, or than the caller asked for.
+     */
+    private static final int FUZZY_SEARCH_MIN_RESULTS = 3;
+
+    /** Queries shorter than this are not matched fuzzily. */
+    private static final int FUZZY_SEARCH_MIN_QUERY_LENGTH = 4;
+
+    public static final int DEFAULT_MAX_EDIT_DISTANCE = 2;
+    public static final long DEFAULT_FUZZY_SEARCH_BUDGET_MILLIS = 4;
+
+    // Scores of country matches. The best scoring countries are shown first.
+    private static final int SCORE_EXACT = 5000;
+    private static final int SCORE_PREFIX = 4000;
+    private static final int SCORE_WORD = 3000;
+    private static final int SCORE_INITIALS = 2000;
+    private static final int SCORE_FUZZY = 1000;
+    private static final int FUZZY_DISTANCE_PENALTY = 100;
+    private static final int BOOST_RECENT = 1500;
+    private static final int BOOST_DEVICE_COUNTRY = 1000;
+
+    /**
+     * zone.tab has a row for every populated region of a country with its own
+     * clock, most populous first. Across countries it is only sorted by code,
+     * so the number of rows a country kept in the catalog stands in for its
+     * population: each one after the first adds BOOST_PER_ZONE, up to less
+     * than one typo costs.
+     */
+    private static final int BOOST_PER_ZONE = 10;
+    private static final int MAX_ZONE_BOOST = FUZZY_DISTANCE_PENALTY - BOOST_PER_ZONE;
+
+    /**
+     * Lets a caller abandon a query that is no longer needed. It is checked
+     * between the search stages.
+     */
+    public interface CancellationToken {
+        boolean isCancelled();
+    }
+
+    public static final class Request {
+        /** One of the FILTER_TYPE_* constants. Unused by {@link #suggest}. */
+        public final int filterType;
+        /** What the user typed, or the country name of a country filter */
+        public final String query;
+        /** GMT offset in hours or local minute-of-day, depending on filterType */
+        public final int time;
+        public final int offset;
+        public final int limit;
+        private final int[] mRecentTimeZoneIndices;
+
+        /**
+         * @param recentTimeZoneIndices most recently selected time zones
+         *            first, or null. They are listed under FILTER_TYPE_NONE and
+         *            their countries are suggested first.
+         */
+        public Request(int filterType, String query, int time, int offset, int limit,
+                int[] recentTimeZoneIndices) {
+            this.filterType = filterType;
+            this.query = query;
+            this.time = time;
+            this.offset = Math.max(offset, 0);
+            this.limit = Math.max(limit, 0);
+            mRecentTimeZoneIndices = recentTimeZoneIndices == null
+                    ? new int[0] : recentTimeZoneIndices.clone();
+        }
+
+        public static Request forSuggestions(String query, int limit,
+                int[] recentTimeZoneIndices) {
+            return new Request(FILTER_TYPE_NONE, query, 0, 0, limit, recentTimeZoneIndices);
+        }
+
+        public static Request forTimeZones(int filterType, String str, int time,
+                int[] recentTimeZoneIndices) {
+            return new Request(filterType, str, time, 0, Integer.MAX_VALUE,
+                    recentTimeZoneIndices);
+        }
+
+        public int getRecentTimeZoneCount() {
+            return mRecentTimeZoneIndices.length;
+        }
+
+        public int getRecentTimeZoneIndex(int i) {
+            return mRecentTimeZoneIndices[i];
+        }
+    }
+
+    /** A filter offered for what the user typed. */
+    public static final class Suggestion {
+        public final int type;
+        public final String constraint;
+        public final int time;
+
+        public Suggestion(int type, String constraint, int time) {
+            this.type = type;
+            this.constraint = constraint;
+            this.time = time;
+        }
+
+        @Override
+        public String toString() {
+            return constraint;
+        }
+    }
+
+    public static final class Response {
+        /**
+         * The filter type of the request or, for suggestions, the kind of
+         * query that was typed: FILTER_TYPE_GMT, FILTER_TYPE_LOCAL_TIME or
+         * FILTER_TYPE_COUNTRY. FILTER_TYPE_NONE if nothing was typed.
+         */
+        public final int filterType;
+        /** Suggestions within [offset, offset + limit). Unmodifiable. */
+        public final List<Suggestion> suggestions;
+        /** Number of suggestions or time zones before offset and limit */
+        public final int totalCount;
+        private final int[] mTimeZoneIndices;
+
+        Response(int filterType, List<Suggestion> suggestions, int[] timeZoneIndices,
+                int totalCount) {
+            this.filterType = filterType;
+            this.suggestions = Collections.unmodifiableList(suggestions);
+            this.totalCount = totalCount;
+            mTimeZoneIndices = timeZoneIndices;
+        }
+
+        public int getTimeZoneCount() {
+            return mTimeZoneIndices.length;
+        }
+
+        /**
+         * @return the TimeZoneData index of the time zone at position
+         */
+        public int getTimeZoneIndex(int position) {
+            return mTimeZoneIndices[position];
+        }
+    }
+
+    private final TimeZoneData mTimeZoneData;
+
+    /**
+     * Boost of the device's and the current time zone's country, plus the
+     * zone.tab population term, by search key index
+     */
+    private final int[] mCountryBoosts;
+
+    private final TimeZoneQueryStats.Recorder mSuggestStats = new TimeZoneQueryStats.Recorder();
+    private final TimeZoneQueryStats.Recorder mTimeZoneStats = new TimeZoneQueryStats.Recorder();
+
+    private volatile int mMaxEditDistance = DEFAULT_MAX_EDIT_DISTANCE;
+    private volatile long mFuzzySearchBudgetNanos =
+            DEFAULT_FUZZY_SEARCH_BUDGET_MILLIS * 1000000L;
+
+    public TimeZoneQueryEngine(TimeZoneData tzd) {
+        mTimeZoneData = tzd;
+
+        final TimeZoneSearchKeys keys = tzd.mSearchKeys;
+        mCountryBoosts = new int[keys.size()];
+        for (Map.Entry<String, List<Integer>> entry
+                : tzd.getSnapshot().timeZonesByCountry.entrySet()) {
+            int index = keys.indexOfCountry(entry.getKey());
+            if (index != -1) {
+                mCountryBoosts[index] = Math.min((entry.getValue().size() - 1) * BOOST_PER_ZONE,
+                        MAX_ZONE_BOOST);
+            }
+        }
+        int device = keys.indexOfCountry(tzd.getCountryName(Locale.getDefault().getCountry()));
+        if (device != -1) {
+            mCountryBoosts[device] += BOOST_DEVICE_COUNTRY;
+        }
+        int current = keys.indexOfCountry(tzd.getDefaultTimeZoneCountry());
+        if (current != -1 && current != device) {
+            mCountryBoosts[current] += BOOST_DEVICE_COUNTRY;
+        }
+    }
+
+    public TimeZoneData getTimeZoneData() {
+        return mTimeZoneData;
+    }
+
+    /**
+     * Sets how many typos are tolerated when nothing matches the query
+     * exactly. 0 turns fuzzy matching off.
+     */
+    public void setMaxEditDistance(int maxEditDistance) {
+        mMaxEditDistance = maxEditDistance;
+    }
+
+    /**
+     * Sets the longest time a query may spend in fuzzy matching before the
+     * matches found so far are returned.
+     */
+    public void setFuzzySearchTimeBudget(long millis) {
+        mFuzzySearchBudgetNanos = millis * 1000000L;
+    }
+
+    /**
+     * Returns the latencies and result counts of {@link #suggest} so far, by
+     * the kind of query.
+     */
+    public TimeZoneQueryStats getSuggestStats() {
+        return mSuggestStats.snapshot();
+    }
+
+    /**
+     * Returns the latencies and result counts of {@link #getTimeZones} so far,
+     * by filter type.
+     */
+    public TimeZoneQueryStats getTimeZoneStats() {
+        return mTimeZoneStats.snapshot();
+    }
+
+    public void resetStats() {
+        mSuggestStats.reset();
+        mTimeZoneStats.reset();
+    }
+
+    public Response suggest(Request request) {
+        return suggest(request, null);
+    }
+
+    /**
+     * Returns the filters matching request.query: GMT offsets and local times
+     * first, then countries with the best match first.
+     *
+     * @return null if the query was cancelled
+     */
+    public Response suggest(Request request, CancellationToken token) {
+        final long start = System.nanoTime();
+        Response response = suggestInternal(request, token);
+        if (response == null) {
+            mSuggestStats.recordCancelled();
+        } else {
+            mSuggestStats.record(response.filterType,
+                    request.query == null ? 0 : request.query.length(),
+                    System.nanoTime() - start, response.totalCount);
+        }
+        return response;
+    }
+
+    private Response suggestInternal(Request request, CancellationToken token) {
+        if (DEBUG) {
+            Log.d(TAG, "suggest >>>> [" + request.query + "]");
+        }
+
+        ArrayList<Suggestion> filtered = new ArrayList<Suggestion>();
+        final TimeZoneCatalogSnapshot catalog = mTimeZoneData.getSnapshot();
+        final TimeZoneSearchKeys keys = catalog.searchKeys;
+        String prefixString = null;
+        if (request.query != null) {
+            prefixString = TimeZoneSearchKeys.fold(request.query.trim(), keys.mLocale);
+        }
+
+        if (prefixString == null || prefixString.length() == 0 || request.limit == 0) {
+            return new Response(FILTER_TYPE_NONE, filtered, new int[0], 0);
+        }
+        int queryType = FILTER_TYPE_COUNTRY;
+
+        // ////////////////////////////////////////
+        // Search by local time and GMT offset
+        // ////////////////////////////////////////
+        boolean gmtOnly = false;
+        int startParsePosition = 0;
+        if (prefixString.charAt(0) == '+' || prefixString.charAt(0) == '-') {
+            gmtOnly = true;
+        }
+
+        if (prefixString.startsWith("gmt")) {
+            startParsePosition = 3;
+            gmtOnly = true;
+        }
+
+        int num = parseNum(prefixString, startParsePosition);
+        if (num != Integer.MIN_VALUE) {
+            queryType = FILTER_TYPE_GMT;
+            boolean positiveOnly = prefixString.length() > startParsePosition
+                    && prefixString.charAt(startParsePosition) == '+';
+            handleSearchByGmt(catalog, filtered, num, positiveOnly);
+        }
+
+        if (isCancelled(token)) {
+            return null;
+        }
+
+        if (!gmtOnly) {
+            int minuteOfDay = parseLocalTime(prefixString);
+            if (minuteOfDay != -1) {
+                queryType = FILTER_TYPE_LOCAL_TIME;
+                handleSearchByLocalTime(filtered, minuteOfDay);
+            }
+        }
+
+        // ////////////////////////////////////////
+        // Search by country
+        // ////////////////////////////////////////
+        if (isCancelled(token)) {
+            return null;
+        }
+
+        final int[] boosts = getCountryBoosts(catalog, request);
+        final int[] matchScores = new int[keys.size()];
+        final long wanted = (long) request.offset + request.limit - filtered.size();
+        TopKSelector selector = new TopKSelector((int) Math.max(0,
+                Math.min(wanted, keys.size())));
+        int matchCount = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            matchScores[i] = scoreCountryMatch(keys, i, prefixString);
+            if (matchScores[i] > 0) {
+                selector.offer(matchScores[i] + boosts[i], keys.mCountrySortRanks[i]);
+                matchCount++;
+            }
+        }
+
+        // ////////////////////////////////////////
+        // Search by country with typos
+        // ////////////////////////////////////////
+        if (matchCount < Math.min(FUZZY_SEARCH_MIN_RESULTS, wanted)
+                && prefixString.length() >= FUZZY_SEARCH_MIN_QUERY_LENGTH) {
+            if (isCancelled(token)) {
+                return null;
+            }
+            matchCount += handleFuzzySearch(keys, selector, matchScores, boosts,
+                    prefixString);
+        }
+
+        // Best match first, then in collation order.
+        final int[] ranks = new int[selector.size()];
+        final int count = selector.drainTieBreakers(ranks);
+        final int totalCount = filtered.size() + matchCount;
+        for (int j = 0; j < count; j++) {
+            String country = keys.mCountries[keys.mCountriesByRank[ranks[j]]];
+            filtered.add(new Suggestion(FILTER_TYPE_COUNTRY, country, 0));
+        }
+
+        // ////////////////////////////////////////
+        // TODO Search by state
+        // ////////////////////////////////////////
+        if (DEBUG) {
+            Log.d(TAG, "suggest <<<< " + filtered.size() + "[" + request.query + "]");
+        }
+
+        int from = Math.min(request.offset, filtered.size());
+        int to = (int) Math.min((long) from + request.limit, filtered.size());
+        return new Response(queryType, new ArrayList<Suggestion>(filtered.subList(from, to)),
+                new int[0], totalCount);
+    }
+
+    /**
+     * Returns the time zones of the filter given by request.filterType,
+     * request.query and request.time, in catalog order. FILTER_TYPE_NONE lists
+     * the default time zone followed by the recent ones.
+     */
+    public Response getTimeZones(Request request) {
+        final long start = System.nanoTime();
+        // Everything is read from one snapshot, so the indices are consistent
+        final TimeZoneCatalogSnapshot catalog = mTimeZoneData.getSnapshot();
+        final int size = catalog.size();
+        int[] indices = new int[size];
+        int length = 0;
+
+        switch (request.filterType) {
+            case FILTER_TYPE_EMPTY:
+                break;
+            case FILTER_TYPE_NONE:
+                // Show the default/current value first
+                int defaultTzIndex = catalog.defaultIndex;
+                if (defaultTzIndex != -1) {
+                    indices[length++] = defaultTzIndex;
+                }
+
+                // Show the recent selections
+                for (int i = 0; i < request.getRecentTimeZoneCount() && length < size; i++) {
+                    int index = request.getRecentTimeZoneIndex(i);
+                    if (index >= 0 && index < size && index != defaultTzIndex) {
+                        indices[length++] = index;
+                    }
+                }
+                break;
+            case FILTER_TYPE_GMT:
+                List<Integer> byOffset = catalog.getTimeZonesByOffset(request.time);
+                if (byOffset != null) {
+                    for (Integer i : byOffset) {
+                        indices[length++] = i;
+                    }
+                }
+                break;
+            case FILTER_TYPE_LOCAL_TIME:
+                for (Integer i : mTimeZoneData.getTimeZonesByLocalTime(request.time)) {
+                    indices[length++] = i;
+                }
+                break;
+            case FILTER_TYPE_COUNTRY:
+                List<Integer> byCountry = catalog.timeZonesByCountry.get(request.query);
+                if (byCountry != null) {
+                    for (Integer i : byCountry) {
+                        indices[length++] = i;
+                    }
+                }
+                break;
+            case FILTER_TYPE_STATE:
+                // TODO Filter by state
+                break;
+            default:
+                throw new IllegalArgumentException();
+        }
+
+        int from = Math.min(request.offset, length);
+        int to = (int) Math.min((long) from + request.limit, length);
+        int[] page = new int[to - from];
+        System.arraycopy(indices, from, page, 0, page.length);
+        mTimeZoneStats.record(request.filterType, 0, System.nanoTime() - start, length);
+        return new Response(request.filterType, new ArrayList<Suggestion>(0), page, length);
+    }
+
+    private static boolean isCancelled(CancellationToken token) {
+        return token != null && token.isCancelled();
+    }
+
+    private int[] getCountryBoosts(TimeZoneCatalogSnapshot catalog, Request request) {
+        if (request.getRecentTimeZoneCount() == 0) {
+            return mCountryBoosts;
+        }
+
+        final TimeZoneSearchKeys keys = catalog.searchKeys;
+        int[] boosts = mCountryBoosts.clone();
+        for (int i = 0; i < request.getRecentTimeZoneCount(); i++) {
+            int index = request.getRecentTimeZoneIndex(i);
+            if (index >= 0 && index < catalog.size()) {
+                int recent = keys.indexOfCountry(catalog.get(index).mCountry);
+                if (recent != -1) {
+                    boosts[recent] += BOOST_RECENT;
+                }
+            }
+        }
+        return boosts;
+    }
+
+    /**
+     * Returns true if the prefixString is an initial for string. Note that
+     * this method will return true even if prefixString does not cover all
+     * the words. Words are separated by non-letters which includes spaces
+     * and symbols).
+     *
+     * For example:
+     * isStartingInitialsFor("UA", "United Arab Emirates") would return true
+     * isStartingInitialsFor("US", "U.S. Virgin Island") would return true
+     *
+     * @param prefixString
+     * @param string
+     * @return
+     */
+    private static boolean isStartingInitialsFor(String prefixString, String string) {
+        final int initialLen = prefixString.length();
+        final int strLen = string.length();
+
+        int initialIdx = 0;
+        boolean wasWordBreak = true;
+        for (int i = 0; i < strLen; i++) {
+            if (!Character.isLetter(string.charAt(i))) {
+                wasWordBreak = true;
+                continue;
+            }
+
+            if (wasWordBreak) {
+                if (prefixString.charAt(initialIdx++) != string.charAt(i)) {
+                    return false;
+                }
+                if (initialIdx == initialLen) {
+                    return true;
+                }
+                wasWordBreak = false;
+            }
+        }
+
+        // Special case for "USA". Note that both strings have been folded already.
+        if (prefixString.equals("usa") && string.equals("united states")) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns how well a country name matches the query, from
+     * {@link #SCORE_EXACT} down to {@link #SCORE_INITIALS}, or 0 if it
+     * doesn't match.
+     */
+    private static int scoreCountryMatch(TimeZoneSearchKeys keys, int country,
+            String prefixString) {
+        final String countryKey = keys.mCountryKeys[country];
+        if (countryKey.startsWith(prefixString)) {
+            return countryKey.length() == prefixString.length() ? SCORE_EXACT : SCORE_PREFIX;
+        }
+
+        // We should also search other words in the country name, so that
+        // searches like "Korea" yield "South Korea".
+        final String[] words = keys.mCountryWords[country];
+        if (words.length > 1) {
+            for (String word : words) {
+                if (word.startsWith(prefixString)) {
+                    return SCORE_WORD;
+                }
+            }
+        }
+
+        if (countryKey.charAt(0) == prefixString.charAt(0)
+                && isStartingInitialsFor(prefixString, countryKey)) {
+            return SCORE_INITIALS;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of countries only matched with typos
+     */
+    private int handleFuzzySearch(TimeZoneSearchKeys keys, TopKSelector selector,
+            int[] matchScores, int[] boosts, String prefixString) {
+        // Allow fewer typos in short queries so that "japn" doesn't also
+        // match "iran" and "oman".
+        int maxDistance = Math.min(mMaxEditDistance, prefixString.length() / 4);
+        if (maxDistance <= 0) {
+            return 0;
+        }
+
+        final int[] distances = new int[keys.size()];
+        mTimeZoneData.getFuzzyIndex().search(prefixString, maxDistance,
+                mFuzzySearchBudgetNanos, distances);
+        int count = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            if (distances[i] != Integer.MAX_VALUE && matchScores[i] == 0) {
+                selector.offer(SCORE_FUZZY - distances[i] * FUZZY_DISTANCE_PENALTY + boosts[i],
+                        keys.mCountrySortRanks[i]);
+                count++;
+            }
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Fuzzy search: " + count + " within " + maxDistance
+                    + " [" + prefixString + "]");
+        }
+        return count;
+    }
+
+    private void handleSearchByGmt(TimeZoneCatalogSnapshot catalog,
+            ArrayList<Suggestion> filtered, int num, boolean positiveOnly) {
+
+        Suggestion r;
+        if (num >= 0) {
+            if (num == 1) {
+                for (int i = 19; i >= 10; i--) {
+                    if (catalog.hasTimeZonesInHrOffset(i)) {
+                        r = new Suggestion(FILTER_TYPE_GMT, "GMT+" + i, i);
+                        filtered.add(r);
+                    }
+                }
+            }
+
+            if (catalog.hasTimeZonesInHrOffset(num)) {
+                r = new Suggestion(FILTER_TYPE_GMT, "GMT+" + num, num);
+                filtered.add(r);
+            }
+            num *= -1;
+        }
+
+        if (!positiveOnly && num != 0) {
+            if (catalog.hasTimeZonesInHrOffset(num)) {
+                r = new Suggestion(FILTER_TYPE_GMT, "GMT" + num, num);
+                filtered.add(r);
+            }
+
+            if (num == -1) {
+                for (int i = -10; i >= -19; i--) {
+                    if (catalog.hasTimeZonesInHrOffset(i)) {
+                        r = new Suggestion(FILTER_TYPE_GMT, "GMT" + i, i);
+                        filtered.add(r);
+                    }
+                }
+            }
+        }
+    }
+
+    private void handleSearchByLocalTime(ArrayList<Suggestion> filtered, int minuteOfDay) {
+        if (mTimeZoneData.getTimeZonesByLocalTime(minuteOfDay).isEmpty()) {
+            return;
+        }
+        filtered.add(new Suggestion(FILTER_TYPE_LOCAL_TIME, formatLocalTime(minuteOfDay),
+                minuteOfDay));
+    }
+
+    private static String formatLocalTime(int minuteOfDay) {
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        StringBuilder sb = new StringBuilder();
+        if (TimeZoneInfo.is24HourFormat) {
+            sb.append(hour);
+        } else {
+            sb.append(hour % 12 == 0 ? 12 : hour % 12);
+        }
+        sb.append(':');
+        if (minute < 10) {
+            sb.append('0');
+        }
+        sb.append(minute);
+        if (!TimeZoneInfo.is24HourFormat) {
+            sb.append(' ');
+            sb.append(DateFormatSymbols.getInstance().getAmPmStrings()[hour < 12 ? 0 : 1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Acceptable strings are in the following format:
+     * [0-9]?[0-9](:[0-9][0-9])? *(a|am|p|pm)? where either the minutes or
+     * the am/pm marker has to be present, e.g. "3pm", "9 am" or "15:30".
+     * Hours are 1-12 with am/pm, 0-23 otherwise.
+     *
+     * @param str lowercase search string
+     * @return minute of the day or -1 as invalid
+     */
+    static int parseLocalTime(String str) {
+        final int len = str.length();
+        int idx = 0;
+        int hour = 0;
+        while (idx < len && idx < 2 && Character.isDigit(str.charAt(idx))) {
+            hour = 10 * hour + Character.digit(str.charAt(idx), 10);
+            idx++;
+        }
+        if (idx == 0) {
+            return -1;
+        }
+
+        int minute = -1;
+        if (idx < len && str.charAt(idx) == ':') {
+            if (idx + 3 > len || !Character.isDigit(str.charAt(idx + 1))
+                    || !Character.isDigit(str.charAt(idx + 2))) {
+                return -1;
+            }
+            minute = 10 * Character.digit(str.charAt(idx + 1), 10)
+                    + Character.digit(str.charAt(idx + 2), 10);
+            idx += 3;
+            if (minute > 59) {
+                return -1;
+            }
+        }
+
+        while (idx < len && str.charAt(idx) == ' ') {
+            idx++;
+        }
+
+        boolean isAm = false;
+        boolean isPm = false;
+        if (idx < len) {
+            char ch = str.charAt(idx++);
+            if (ch == 'a') {
+                isAm = true;
+            } else if (ch == 'p') {
+                isPm = true;
+            } else {
+                return -1;
+            }
+            if (idx < len && str.charAt(idx) == 'm') {
+                idx++;
+            }
+            if (idx != len) {
+                return -1;
+            }
+        }
+
+        if (isAm || isPm) {
+            if (hour < 1 || hour > 12) {
+                return -1;
+            }
+            hour %= 12;
+            if (isPm) {
+                hour += 12;
+            }
+        } else if (minute == -1 || hour > 23) {
+            // A bare number is a GMT offset
+            return -1;
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Parsing " + str + " -> " + hour + ":" + minute);
+        }
+        return hour * 60 + Math.max(minute, 0);
+    }
+
+    /**
+     * Acceptable strings are in the following format: [+-]?[0-9]?[0-9]
+     *
+     * @param str
+     * @param startIndex
+     * @return Integer.MIN_VALUE as invalid
+     */
+    static int parseNum(String str, int startIndex) {
+        int idx = startIndex;
+        int num = Integer.MIN_VALUE;
+        int negativeMultiplier = 1;
+
+        if (idx < 0 || idx >= str.length()) {
+            // Nothing after the prefix, e.g. "gmt"
+            return Integer.MIN_VALUE;
+        }
+
+        // First char - check for + and -
+        char ch = str.charAt(idx++);
+        switch (ch) {
+            case '-':
+                negativeMultiplier = -1;
+                // fall through
+            case '+':
+                if (idx >= str.length()) {
+                    // No more digits
+                    return Integer.MIN_VALUE;
+                }
+
+                ch = str.charAt(idx++);
+                break;
+        }
+
+        if (!Character.isDigit(ch)) {
+            // No digit
+            return Integer.MIN_VALUE;
+        }
+
+        // Got first digit
+        num = Character.digit(ch, 10);
+
+        // Check next char
+        if (idx < str.length()) {
+            ch = str.charAt(idx++);
+            if (Character.isDigit(ch)) {
+                // Got second digit
+                num = 10 * num + Character.digit(ch, 10);
+            } else {
+                return Integer.MIN_VALUE;
+            }
+        }
+
+        if (idx != str.length()) {
+            // Invalid
+            return Integer.MIN_VALUE;
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "Parsing " + str + " -> " + negativeMultiplier * num);
+        }
+        return negativeMultiplier * num;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A snapshot of the latencies and result counts of the queries run by a
+ * {@link TimeZoneQueryEngine}, per filter type.
+ *
+ * Latencies and result counts are kept in fixed buckets, so recording a query
+ * is a few atomic increments and never allocates. Percentiles are therefore
+ * only as precise as the bucket bounds.
+ */
+public final class TimeZoneQueryStats {
+    /**
+     * Filter types from FILTER_TYPE_EMPTY up to this many are tracked, which
+     * leaves room for new types. Others are counted with FILTER_TYPE_NONE.
+     */
+    static final int MAX_FILTER_TYPES = 8;
+
+    /** Upper bounds of the latency buckets. The last bucket is unbounded. */
+    private static final long[] LATENCY_BUCKET_BOUNDS_MICROS = {
+            50, 100, 250, 500, 1000, 2000, 4000, 8000, 16000, 32000, 64000,
+    };
+    public static final int LATENCY_BUCKETS = LATENCY_BUCKET_BOUNDS_MICROS.length + 1;
+
+    /** Result counts are bucketed as 0, 1, 2, 3-4, 5-8, ... 129+ */
+    public static final int RESULT_COUNT_BUCKETS = 10;
+
+    /** Query lengths of this or more are counted together */
+    public static final int MAX_QUERY_LENGTH = 16;
+
+    private final long[] mCounts;
+    private final long[] mTotalNanos;
+    private final long[] mLatencyBuckets;
+    private final long[] mResultCountBuckets;
+    private final long[] mQueryLengthCounts;
+    private final long[] mQueryLengthNanos;
+    private final long mCancelled;
+
+    private TimeZoneQueryStats(Recorder recorder) {
+        mCounts = toArray(recorder.mCounts);
+        mTotalNanos = toArray(recorder.mTotalNanos);
+        mLatencyBuckets = toArray(recorder.mLatencyBuckets);
+        mResultCountBuckets = toArray(recorder.mResultCountBuckets);
+        mQueryLengthCounts = toArray(recorder.mQueryLengthCounts);
+        mQueryLengthNanos = toArray(recorder.mQueryLengthNanos);
+        mCancelled = recorder.mCancelled.get();
+    }
+
+    /**
+     * @return the upper bound of the latency bucket in microseconds, or
+     *         Long.MAX_VALUE for the last bucket
+     */
+    public static long getLatencyBucketUpperBoundMicros(int bucket) {
+        return bucket < LATENCY_BUCKET_BOUNDS_MICROS.length
+                ? LATENCY_BUCKET_BOUNDS_MICROS[bucket] : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the largest result count of the bucket, or Integer.MAX_VALUE
+     *         for the last bucket
+     */
+    public static int getResultCountBucketUpperBound(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return bucket < RESULT_COUNT_BUCKETS - 1 ? 1 << (bucket - 1) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return how many queries of the filter type completed
+     */
+    public long getCount(int filterType) {
+        return mCounts[slot(filterType)];
+    }
+
+    /**
+     * @return the average latency of the filter type in nanoseconds, or 0
+     */
+    public long getAverageNanos(int filterType) {
+        final int slot = slot(filterType);
+        return mCounts[slot] == 0 ? 0 : mTotalNanos[slot] / mCounts[slot];
+    }
+
+    public long getLatencyBucketCount(int filterType, int bucket) {
+        return mLatencyBuckets[slot(filterType) * LATENCY_BUCKETS + bucket];
+    }
+
+    public long getResultCountBucketCount(int filterType, int bucket) {
+        return mResultCountBuckets[slot(filterType) * RESULT_COUNT_BUCKETS + bucket];
+    }
+
+    /**
+     * Returns the upper bound of the latency bucket holding the given
+     * percentile, e.g. 99 for the tail latency.
+     *
+     * @return microseconds, Long.MAX_VALUE if it is in the last bucket, or 0
+     *         if there were no queries
+     */
+    public long getLatencyPercentileMicros(int filterType, double percentile) {
+        final int slot = slot(filterType);
+        final long count = mCounts[slot];
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += mLatencyBuckets[slot * LATENCY_BUCKETS + i];
+            if (seen >= rank) {
+                return getLatencyBucketUpperBoundMicros(i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return how many queries of the given length, across filter types,
+     *         completed. Lengths from MAX_QUERY_LENGTH on are counted together.
+     */
+    public long getQueryLengthCount(int length) {
+        return mQueryLengthCounts[Math.min(length, MAX_QUERY_LENGTH)];
+    }
+
+    /**
+     * @return the average latency of queries of the given length in
+     *         nanoseconds, or 0
+     */
+    public long getQueryLengthAverageNanos(int length) {
+        final int i = Math.min(length, MAX_QUERY_LENGTH);
+        return mQueryLengthCounts[i] == 0 ? 0 : mQueryLengthNanos[i] / mQueryLengthCounts[i];
+    }
+
+    /**
+     * @return how many queries were abandoned because a newer one superseded
+     *         them
+     */
+    public long getCancelledCount() {
+        return mCancelled;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int type = TimeZoneQueryEngine.FILTER_TYPE_EMPTY;
+                type < TimeZoneQueryEngine.FILTER_TYPE_EMPTY + MAX_FILTER_TYPES; type++) {
+            if (getCount(type) == 0) {
+                continue;
+            }
+            sb.append("type=").append(type);
+            sb.append(" count=").append(getCount(type));
+            sb.append(" avg=").append(getAverageNanos(type) / 1000).append("us");
+            sb.append(" p50<=").append(getLatencyPercentileMicros(type, 50)).append("us");
+            sb.append(" p99<=").append(getLatencyPercentileMicros(type, 99)).append("us\n");
+        }
+        sb.append("cancelled=").append(mCancelled);
+        return sb.toString();
+    }
+
+    private static int slot(int filterType) {
+        final int slot = filterType - TimeZoneQueryEngine.FILTER_TYPE_EMPTY;
+        if (slot < 0 || slot >= MAX_FILTER_TYPES) {
+            return TimeZoneQueryEngine.FILTER_TYPE_NONE - TimeZoneQueryEngine.FILTER_TYPE_EMPTY;
+        }
+        return slot;
+    }
+
+    private static long[] toArray(AtomicLongArray array) {
+        long[] values = new long[array.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Records queries. Safe to use from several threads; a snapshot taken
+     * while queries are recorded may be off by the queries in flight.
+     */
+    static class Recorder {
+        final AtomicLongArray mCounts = new AtomicLongArray(MAX_FILTER_TYPES);
+        final AtomicLongArray mTotalNanos = new AtomicLongArray(MAX_FILTER_TYPES);
+        final AtomicLongArray mLatencyBuckets =
+                new AtomicLongArray(MAX_FILTER_TYPES * LATENCY_BUCKETS);
+        final AtomicLongArray mResultCountBuckets =
+                new AtomicLongArray(MAX_FILTER_TYPES * RESULT_COUNT_BUCKETS);
+        final AtomicLongArray mQueryLengthCounts = new AtomicLongArray(MAX_QUERY_LENGTH + 1);
+        final AtomicLongArray mQueryLengthNanos = new AtomicLongArray(MAX_QUERY_LENGTH + 1);
+        final AtomicLong mCancelled = new AtomicLong();
+
+        void record(int filterType, int queryLength, long nanos, int resultCount) {
+            final int slot = slot(filterType);
+            mCounts.incrementAndGet(slot);
+            mTotalNanos.addAndGet(slot, nanos);
+            mLatencyBuckets.incrementAndGet(slot * LATENCY_BUCKETS + latencyBucket(nanos));
+            mResultCountBuckets.incrementAndGet(
+                    slot * RESULT_COUNT_BUCKETS + resultCountBucket(resultCount));
+
+            final int length = Math.min(queryLength, MAX_QUERY_LENGTH);
+            mQueryLengthCounts.incrementAndGet(length);
+            mQueryLengthNanos.addAndGet(length, nanos);
+        }
+
+        void recordCancelled() {
+            mCancelled.incrementAndGet();
+        }
+
+        TimeZoneQueryStats snapshot() {
+            return new TimeZoneQueryStats(this);
+        }
+
+        void reset() {
+            clear(mCounts);
+            clear(mTotalNanos);
+            clear(mLatencyBuckets);
+            clear(mResultCountBuckets);
+            clear(mQueryLengthCounts);
+            clear(mQueryLengthNanos);
+            mCancelled.set(0);
+        }
+
+        private static int latencyBucket(long nanos) {
+            final long micros = nanos / 1000;
+            for (int i = 0; i < LATENCY_BUCKET_BOUNDS_MICROS.length; i++) {
+                if (micros < LATENCY_BUCKET_BOUNDS_MICROS[i]) {
+                    return i;
+                }
+            }
+            return LATENCY_BUCKET_BOUNDS_MICROS.length;
+        }
+
+        private static int resultCountBucket(int count) {
+            if (count <= 0) {
+                return 0;
+            }
+            return Math.min(RESULT_COUNT_BUCKETS - 1,
+                    33 - Integer.numberOfLeadingZeros(count - 1));
+        }
+
+        private static void clear(AtomicLongArray array) {
+            for (int i = 0; i < array.length(); i++) {
+                array.set(i, 0);
+            }
+        }
+    }
+}
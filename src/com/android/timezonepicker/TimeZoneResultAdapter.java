@@ -17,8 +17,6 @@
 package com.android.timezonepicker;
 
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -32,35 +30,21 @@ import com.android.timezonepicker.TimeZoneFilterTypeAdapter.OnSetFilterListener;
 import com.android.timezonepicker.TimeZonePickerView.OnTimeZoneSetListener;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
 
 public class TimeZoneResultAdapter extends BaseAdapter implements OnItemClickListener,
         OnSetFilterListener {
     private static final String TAG = "TimeZoneResultAdapter";
     private static final boolean DEBUG = false;
     private static final int VIEW_TAG_TIME_ZONE = R.id.time_zone;
+    private static final int VIEW_TAG_TIME_OFFSET = R.id.time_offset;
     private static final int EMPTY_INDEX = -100;
 
-    /** SharedPref name and key for recent time zones */
-    private static final String SHARED_PREFS_NAME = "com.android.calendar_preferences";
-    private static final String KEY_RECENT_TIMEZONES = "preferences_recent_timezones";
-
     private int mLastFilterType;
     private String mLastFilterString;
     private int mLastFilterTime;
 
     private boolean mHasResults = false;
 
-    /**
-     * The delimiter we use when serializing recent timezones to shared
-     * preferences
-     */
-    private static final String RECENT_TIMEZONES_DELIMITER = ",";
-
-    /** The maximum number of recent timezones to save */
-    private static final int MAX_RECENT_TIMEZONES = 3;
-
     static class ViewHolder {
         TextView timeZone;
         TextView timeOffset;
@@ -80,23 +64,74 @@ public class TimeZoneResultAdapter extends BaseAdapter implements OnItemClickLis
 
     private OnTimeZoneSetListener mTimeZoneSetListener;
     private TimeZoneData mTimeZoneData;
+    private TimeZoneQueryEngine mEngine;
+    private RecentTimeZoneStore mRecents;
 
     private int[] mFilteredTimeZoneIndices;
     private int mFilteredTimeZoneLength = 0;
 
+    /** Filter results waiting for their rows to be built */
+    private int[] mPendingTimeZoneIndices;
+
+    /**
+     * Texts of the rows, by position, built in the background. The list
+     * switches to new results only once their rows are built, so every
+     * position shown has a row.
+     */
+    private TimeZoneRow[] mRows = new TimeZoneRow[0];
+    private TimeZoneRowBuilder mRowBuilder;
+    private final TimeZoneRowBuilder.Callback mRowsBuilt = new TimeZoneRowBuilder.Callback() {
+        @Override
+        public void onRowsBuilt(int[] indices, TimeZoneRow[] rows) {
+            showRows(indices, rows.length, rows);
+        }
+    };
+
     public TimeZoneResultAdapter(Context context, TimeZoneData tzd,
             com.android.timezonepicker.TimeZonePickerView.OnTimeZoneSetListener l) {
+        this(context, new TimeZoneQueryEngine(tzd), l);
+    }
+
+    public TimeZoneResultAdapter(Context context, TimeZoneQueryEngine engine,
+            com.android.timezonepicker.TimeZonePickerView.OnTimeZoneSetListener l) {
+        this(context, engine, l, true);
+    }
+
+    /**
+     * @param showDefault whether to list the default and recent time zones.
+     *            False if {@link #restoreFilter} is called next.
+     */
+    TimeZoneResultAdapter(Context context, TimeZoneQueryEngine engine,
+            com.android.timezonepicker.TimeZonePickerView.OnTimeZoneSetListener l,
+            boolean showDefault) {
         super();
 
         mContext = context;
-        mTimeZoneData = tzd;
+        mEngine = engine;
+        mTimeZoneData = engine.getTimeZoneData();
         mTimeZoneSetListener = l;
 
         mInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
 
         mFilteredTimeZoneIndices = new int[mTimeZoneData.size()];
+        mPendingTimeZoneIndices = new int[mTimeZoneData.size()];
+        mRowBuilder = new TimeZoneRowBuilder(context, mTimeZoneData);
 
-        onSetFilter(TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE, null, 0);
+        mRecents = RecentTimeZoneStore.getInstance(context);
+        if (showDefault) {
+            onSetFilter(TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE, null, 0);
+        }
+        if (!mRecents.isLoaded()) {
+            mRecents.runWhenLoaded(new Runnable() {
+                @Override
+                public void run() {
+                    // Add the recent time zones if they are still showing
+                    if (mLastFilterType == TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE) {
+                        onSetFilter(TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE, null, 0);
+                    }
+                }
+            });
+        }
     }
 
     public boolean hasResults() {
@@ -126,112 +161,137 @@ public class TimeZoneResultAdapter extends BaseAdapter implements OnItemClickLis
         mLastFilterString = str;
         mLastFilterTime = time;
 
-        mFilteredTimeZoneLength = 0;
-        int idx = 0;
-
-        switch (filterType) {
-            case TimeZoneFilterTypeAdapter.FILTER_TYPE_EMPTY:
-                mFilteredTimeZoneIndices[mFilteredTimeZoneLength++] = EMPTY_INDEX;
-                break;
-            case TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE:
-                // Show the default/current value first
-                int defaultTzIndex = mTimeZoneData.getDefaultTimeZoneIndex();
-                if (defaultTzIndex != -1) {
-                    mFilteredTimeZoneIndices[mFilteredTimeZoneLength++] = defaultTzIndex;
-                }
-
-                // Show the recent selections
-                SharedPreferences prefs = mContext.getSharedPreferences(SHARED_PREFS_NAME,
-                        Context.MODE_PRIVATE);
-                String recentsString = prefs.getString(KEY_RECENT_TIMEZONES, null);
-                if (!TextUtils.isEmpty(recentsString)) {
-                    String[] recents = recentsString.split(RECENT_TIMEZONES_DELIMITER);
-                    for (int i = recents.length - 1; i >= 0; i--) {
-                        if (!TextUtils.isEmpty(recents[i])
-                                && !recents[i].equals(mTimeZoneData.mDefaultTimeZoneId)) {
-                            int index = mTimeZoneData.findIndexByTimeZoneIdSlow(recents[i]);
-                            if (index != -1) {
-                                mFilteredTimeZoneIndices[mFilteredTimeZoneLength++] = index;
-                            }
-                        }
-                    }
-                }
+        int length = 0;
+        if (filterType == TimeZoneFilterTypeAdapter.FILTER_TYPE_EMPTY) {
+            mPendingTimeZoneIndices[length++] = EMPTY_INDEX;
+        } else {
+            int[] recents = filterType == TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE
+                    ? getRecentTimeZoneIndices() : null;
+            TimeZoneQueryEngine.Response response = mEngine.getTimeZones(
+                    TimeZoneQueryEngine.Request.forTimeZones(filterType, str, time, recents));
+            for (int i = 0; i < response.getTimeZoneCount(); i++) {
+                mPendingTimeZoneIndices[length++] = response.getTimeZoneIndex(i);
+            }
+        }
 
-                break;
-            case TimeZoneFilterTypeAdapter.FILTER_TYPE_GMT:
-                ArrayList<Integer> indices = mTimeZoneData.getTimeZonesByOffset(time);
-                if (indices != null) {
-                    for (Integer i : indices) {
-                        mFilteredTimeZoneIndices[mFilteredTimeZoneLength++] = i;
-                    }
-                }
-                break;
-            case TimeZoneFilterTypeAdapter.FILTER_TYPE_COUNTRY:
-                ArrayList<Integer> tzIds = mTimeZoneData.mTimeZonesByCountry.get(str);
-                if (tzIds != null) {
-                    for (Integer tzi : tzIds) {
-                        mFilteredTimeZoneIndices[mFilteredTimeZoneLength++] = tzi;
-                    }
-                }
-                break;
-            case TimeZoneFilterTypeAdapter.FILTER_TYPE_STATE:
-                // TODO Filter by state
-                break;
-            default:
-                throw new IllegalArgumentException();
+        if (filterType == TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE
+                || filterType == TimeZoneFilterTypeAdapter.FILTER_TYPE_EMPTY) {
+            // A few rows, whose labels a pre-warm has cached. Listed right
+            // away, so that the picker never opens on an empty list.
+            showRows(mPendingTimeZoneIndices, length,
+                    mRowBuilder.buildNow(mPendingTimeZoneIndices, length));
+        } else {
+            // The list keeps showing the previous results until mRowsBuilt
+            mRowBuilder.build(mPendingTimeZoneIndices, length, mRowsBuilt);
         }
-        mHasResults = mFilteredTimeZoneLength > 0;
+    }
 
+    private void showRows(int[] indices, int length, TimeZoneRow[] rows) {
+        System.arraycopy(indices, 0, mFilteredTimeZoneIndices, 0, length);
+        mFilteredTimeZoneLength = length;
+        mHasResults = length > 0;
+        mRows = rows;
         notifyDataSetChanged();
     }
 
     /**
-     * Saves the given timezone ID as a recent timezone under shared
-     * preferences. If there are already the maximum number of recent timezones
-     * saved, it will remove the oldest and append this one.
+     * @return the row at position, with the local time of the current minute
+     */
+    private TimeZoneRow getRow(int position) {
+        TimeZoneRow row = mRows[position];
+        final long minute = TimeZoneRowBuilder.currentMinute();
+        if (row.labelMinute != minute) {
+            // Same label cache as updateTimeTexts, so this is a lookup
+            row = row.withGmtLabel(row.timeZone.getGmtDisplayName(mContext), minute);
+            mRows[position] = row;
+        }
+        return row;
+    }
+
+    /**
+     * Updates the local time of the rows attached to list without rebinding
+     * them. Labels come from the cache shared by all time zones with the
+     * same offset, so each distinct offset is formatted once per minute, and
+     * only rows whose label changed are touched.
      *
-     * @param id the ID of the timezone to save
-     * @see {@link #MAX_RECENT_TIMEZONES}
+     * @return how many rows were updated
      */
-    public void saveRecentTimezone(String id) {
-        SharedPreferences prefs = mContext.getSharedPreferences(SHARED_PREFS_NAME,
-                Context.MODE_PRIVATE);
-        String recentsString = prefs.getString(KEY_RECENT_TIMEZONES, null);
-        if (recentsString == null) {
-            recentsString = id;
-        } else {
-            // De-dup
-            LinkedHashSet<String> recents = new LinkedHashSet<String>();
-            for(String tzId : recentsString.split(RECENT_TIMEZONES_DELIMITER)) {
-                if (!recents.contains(tzId) && !id.equals(tzId)) {
-                    recents.add(tzId);
-                }
+    int updateTimeTexts(ViewGroup list) {
+        int updated = 0;
+        final int count = list.getChildCount();
+        for (int i = 0; i < count; i++) {
+            View v = list.getChildAt(i);
+            TimeZoneInfo tzi = (TimeZoneInfo) v.getTag(VIEW_TAG_TIME_ZONE);
+            if (tzi == null || !(v.getTag() instanceof ViewHolder)) {
+                continue;
             }
 
-            Iterator<String> it = recents.iterator();
-            while (recents.size() >= MAX_RECENT_TIMEZONES) {
-                if (!it.hasNext()) {
-                    break;
-                }
-                it.next();
-                it.remove();
+            CharSequence label = tzi.getGmtDisplayName(mContext);
+            if (label != v.getTag(VIEW_TAG_TIME_OFFSET)) {
+                ((ViewHolder) v.getTag()).timeOffset.setText(label);
+                v.setTag(VIEW_TAG_TIME_OFFSET, label);
+                updated++;
             }
-            recents.add(id);
-
-            StringBuilder builder = new StringBuilder();
-            boolean first = true;
-            for (String recent : recents) {
-                if (first) {
-                    first = false;
-                } else {
-                    builder.append(RECENT_TIMEZONES_DELIMITER);
-                }
-                builder.append(recent);
-            }
-            recentsString = builder.toString();
         }
+        return updated;
+    }
+
+    /**
+     * @return the TimeZoneData indices of the rows shown, in order
+     */
+    int[] getFilteredTimeZoneIndices() {
+        int[] indices = new int[mFilteredTimeZoneLength];
+        System.arraycopy(mFilteredTimeZoneIndices, 0, indices, 0, mFilteredTimeZoneLength);
+        return indices;
+    }
+
+    /**
+     * @return the rows shown, in order, for {@link #restoreFilter}
+     */
+    TimeZoneRow[] getRows() {
+        return mRows.clone();
+    }
+
+    /**
+     * Shows the rows an adapter for the same catalog had, from
+     * {@link #getFilteredTimeZoneIndices} and {@link #getRows}, without
+     * filtering or building them again.
+     */
+    void restoreFilter(int filterType, String str, int time, int[] indices,
+            TimeZoneRow[] rows) {
+        mLastFilterType = filterType;
+        mLastFilterString = str;
+        mLastFilterTime = time;
+
+        if (rows.length == indices.length && indices.length <= mFilteredTimeZoneIndices.length) {
+            mRowBuilder.cancel();
+            showRows(indices, indices.length, rows.clone());
+        } else {
+            mRowBuilder.build(indices, Math.min(indices.length, mPendingTimeZoneIndices.length),
+                    mRowsBuilt);
+        }
+    }
 
-        prefs.edit().putString(KEY_RECENT_TIMEZONES, recentsString).apply();
+    /**
+     * Returns the recently selected time zones, most recent first, leaving
+     * out the default time zone. Empty until they have been read from
+     * preferences.
+     *
+     * @return TimeZoneData indices
+     */
+    public int[] getRecentTimeZoneIndices() {
+        return mRecents.getTimeZoneIndices(mTimeZoneData);
+    }
+
+    /**
+     * Saves the given timezone ID as a recent timezone. The list is written
+     * to shared preferences in the background.
+     *
+     * @param id the ID of the timezone to save
+     * @see RecentTimeZoneStore
+     */
+    public void saveRecentTimezone(String id) {
+        mRecents.add(id);
     }
 
     @Override
@@ -280,14 +340,15 @@ public class TimeZoneResultAdapter extends BaseAdapter implements OnItemClickLis
 
         ViewHolder vh = (ViewHolder) v.getTag();
 
-        TimeZoneInfo tzi = mTimeZoneData.get(mFilteredTimeZoneIndices[position]);
-        v.setTag(VIEW_TAG_TIME_ZONE, tzi);
+        TimeZoneRow row = getRow(position);
+        v.setTag(VIEW_TAG_TIME_ZONE, row.timeZone);
 
-        vh.timeZone.setText(tzi.mDisplayName);
+        vh.timeZone.setText(row.displayName);
 
-        vh.timeOffset.setText(tzi.getGmtDisplayName(mContext));
+        vh.timeOffset.setText(row.gmtLabel);
+        v.setTag(VIEW_TAG_TIME_OFFSET, row.gmtLabel);
 
-        String location = tzi.mCountry;
+        CharSequence location = row.location;
         if (location == null) {
             vh.location.setVisibility(View.INVISIBLE);
         } else {
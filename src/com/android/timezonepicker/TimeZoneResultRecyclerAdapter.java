@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.android.timezonepicker.TimeZoneFilterTypeAdapter.OnSetFilterListener;
+import com.android.timezonepicker.TimeZonePickerView.OnTimeZoneSetListener;
+
+/**
+ * The time zone result list for a RecyclerView. Same rows as
+ * {@link TimeZoneResultAdapter}, but a new filter only rebinds the rows that
+ * changed: rows are identified by their catalog index, so the old and new
+ * results are diffed as int arrays and the removes, moves and inserts are
+ * dispatched to the RecyclerView.
+ *
+ * To use it, pass it as the OnSetFilterListener of a
+ * {@link TimeZoneFilterTypeAdapter}.
+ */
+public class TimeZoneResultRecyclerAdapter
+        extends RecyclerView.Adapter<TimeZoneResultRecyclerAdapter.ViewHolder>
+        implements OnSetFilterListener {
+    private static final String TAG = "TimeZoneResultRecyclerAdapter";
+    private static final boolean DEBUG = false;
+    private static final int EMPTY_INDEX = -100;
+
+    private static final int VIEW_TYPE_TIME_ZONE = 0;
+    private static final int VIEW_TYPE_EMPTY = 1;
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView timeZone;
+        final TextView timeOffset;
+        final TextView location;
+
+        ViewHolder(View v) {
+            super(v);
+            timeZone = (TextView) v.findViewById(R.id.time_zone);
+            timeOffset = (TextView) v.findViewById(R.id.time_offset);
+            location = (TextView) v.findViewById(R.id.location);
+        }
+    }
+
+    private Context mContext;
+    private LayoutInflater mInflater;
+
+    private OnTimeZoneSetListener mTimeZoneSetListener;
+    private TimeZoneData mTimeZoneData;
+    private TimeZoneQueryEngine mEngine;
+    private RecentTimeZoneStore mRecents;
+
+    private int mLastFilterType;
+    private String mLastFilterString;
+    private int mLastFilterTime;
+
+    private int[] mFilteredTimeZoneIndices = new int[0];
+    private int mFilteredTimeZoneLength = 0;
+
+    private final OnClickListener mOnClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            TimeZoneInfo tzi = (TimeZoneInfo) v.getTag(R.id.time_zone);
+            if (tzi != null) {
+                if (mTimeZoneSetListener != null) {
+                    mTimeZoneSetListener.onTimeZoneSet(tzi);
+                }
+                mRecents.add(tzi.mTzId);
+            }
+        }
+    };
+
+    public TimeZoneResultRecyclerAdapter(Context context, TimeZoneQueryEngine engine,
+            OnTimeZoneSetListener l) {
+        mContext = context;
+        mEngine = engine;
+        mTimeZoneData = engine.getTimeZoneData();
+        mTimeZoneSetListener = l;
+        mRecents = RecentTimeZoneStore.getInstance(context);
+
+        mInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+
+        setHasStableIds(true);
+        onSetFilter(TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE, null, 0);
+        if (!mRecents.isLoaded()) {
+            mRecents.runWhenLoaded(new Runnable() {
+                @Override
+                public void run() {
+                    // Add the recent time zones if they are still showing
+                    if (mLastFilterType == TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE) {
+                        onSetFilter(TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE, null, 0);
+                    }
+                }
+            });
+        }
+    }
+
+    public boolean hasResults() {
+        return mFilteredTimeZoneLength > 0;
+    }
+
+    public int getLastFilterType() {
+        return mLastFilterType;
+    }
+
+    public String getLastFilterString() {
+        return mLastFilterString;
+    }
+
+    public int getLastFilterTime() {
+        return mLastFilterTime;
+    }
+
+    // Implements OnSetFilterListener
+    @Override
+    public void onSetFilter(int filterType, String str, int time) {
+        if (DEBUG) {
+            Log.d(TAG, "onSetFilter: " + filterType + " [" + str + "] " + time);
+        }
+
+        mLastFilterType = filterType;
+        mLastFilterString = str;
+        mLastFilterTime = time;
+
+        int[] indices;
+        if (filterType == TimeZoneFilterTypeAdapter.FILTER_TYPE_EMPTY) {
+            indices = new int[] { EMPTY_INDEX };
+        } else {
+            int[] recents = filterType == TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE
+                    ? mRecents.getTimeZoneIndices(mTimeZoneData) : null;
+            TimeZoneQueryEngine.Response response = mEngine.getTimeZones(
+                    TimeZoneQueryEngine.Request.forTimeZones(filterType, str, time, recents));
+            indices = new int[response.getTimeZoneCount()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = response.getTimeZoneIndex(i);
+            }
+        }
+
+        final int[] oldIndices = mFilteredTimeZoneIndices;
+        final int oldLength = mFilteredTimeZoneLength;
+        mFilteredTimeZoneIndices = indices;
+        mFilteredTimeZoneLength = indices.length;
+
+        IntArrayDiff.dispatch(oldIndices, oldLength, indices, indices.length,
+                new IntArrayDiff.Callback() {
+                    @Override
+                    public void onRemoved(int position, int count) {
+                        notifyItemRangeRemoved(position, count);
+                    }
+
+                    @Override
+                    public void onInserted(int position, int count) {
+                        notifyItemRangeInserted(position, count);
+                    }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) {
+                        notifyItemMoved(fromPosition, toPosition);
+                    }
+                });
+    }
+
+    @Override
+    public int getItemCount() {
+        return mFilteredTimeZoneLength;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mFilteredTimeZoneIndices[position];
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return mFilteredTimeZoneIndices[position] == EMPTY_INDEX
+                ? VIEW_TYPE_EMPTY : VIEW_TYPE_TIME_ZONE;
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if (viewType == VIEW_TYPE_EMPTY) {
+            return new ViewHolder(mInflater.inflate(R.layout.empty_time_zone_item, parent,
+                    false));
+        }
+        View v = mInflater.inflate(R.layout.time_zone_item, parent, false);
+        v.setOnClickListener(mOnClickListener);
+        return new ViewHolder(v);
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder vh, int position) {
+        if (mFilteredTimeZoneIndices[position] == EMPTY_INDEX) {
+            return;
+        }
+
+        TimeZoneInfo tzi = mTimeZoneData.get(mFilteredTimeZoneIndices[position]);
+        vh.itemView.setTag(R.id.time_zone, tzi);
+
+        vh.timeZone.setText(tzi.mDisplayName);
+
+        vh.timeOffset.setText(tzi.getGmtDisplayName(mContext));
+
+        String location = tzi.mCountry;
+        if (location == null) {
+            vh.location.setVisibility(View.INVISIBLE);
+        } else {
+            vh.location.setText(location);
+            vh.location.setVisibility(View.VISIBLE);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+/**
+ * The texts of one row of the result list, ready to be set on the views.
+ * Rows are immutable so that they can be built on a background thread.
+ */
+final class TimeZoneRow {
+    /** TimeZoneData index */
+    final int index;
+    final TimeZoneInfo timeZone;
+    final CharSequence displayName;
+    /** Local time and GMT offset */
+    final CharSequence gmtLabel;
+    /** Country, or null */
+    final CharSequence location;
+    /** The minute, since the epoch, gmtLabel shows the local time of */
+    final long labelMinute;
+
+    TimeZoneRow(int index, TimeZoneInfo timeZone, CharSequence displayName,
+            CharSequence gmtLabel, CharSequence location, long labelMinute) {
+        this.index = index;
+        this.timeZone = timeZone;
+        this.displayName = displayName;
+        this.gmtLabel = gmtLabel;
+        this.location = location;
+        this.labelMinute = labelMinute;
+    }
+
+    /**
+     * @return a copy of this row with a new local time
+     */
+    TimeZoneRow withGmtLabel(CharSequence gmtLabel, long labelMinute) {
+        return new TimeZoneRow(index, timeZone, displayName, gmtLabel, location, labelMinute);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.DateUtils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds {@link TimeZoneRow}s in the background, so that binding a row only
+ * sets texts. Short lists can be built right away instead.
+ *
+ * Only the latest request is delivered; rows of a request that was
+ * superseded while building are dropped.
+ */
+class TimeZoneRowBuilder {
+    interface Callback {
+        /**
+         * Called on the main thread
+         *
+         * @param indices the indices the rows were built for
+         */
+        void onRowsBuilt(int[] indices, TimeZoneRow[] rows);
+    }
+
+    private final Context mContext;
+    private final TimeZoneData mTimeZoneData;
+    private final Executor mExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    TimeZoneRowBuilder(Context context, TimeZoneData tzd) {
+        mContext = context.getApplicationContext();
+        mTimeZoneData = tzd;
+    }
+
+    static long currentMinute() {
+        return System.currentTimeMillis() / DateUtils.MINUTE_IN_MILLIS;
+    }
+
+    /**
+     * Builds the rows of the given TimeZoneData indices. Negative indices,
+     * like the empty item, get a null row.
+     */
+    void build(int[] indices, int length, final Callback callback) {
+        final int[] copy = new int[length];
+        System.arraycopy(indices, 0, copy, 0, length);
+        final int generation = mGeneration.incrementAndGet();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                TimeZoneRow[] rows = buildRows(copy, copy.length, generation);
+                if (rows != null) {
+                    deliver(generation, copy, rows, callback);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the rows on the calling thread, and drops the rows being built
+     * in the background. For short lists whose labels are likely cached,
+     * e.g. by {@link TimeZonePickerPrewarm}.
+     */
+    TimeZoneRow[] buildNow(int[] indices, int length) {
+        return buildRows(indices, length, mGeneration.incrementAndGet());
+    }
+
+    /**
+     * @return the rows, or null if the build was superseded
+     */
+    private TimeZoneRow[] buildRows(int[] indices, int length, int generation) {
+        final long minute = currentMinute();
+        TimeZoneRow[] rows = new TimeZoneRow[length];
+        for (int i = 0; i < length; i++) {
+            if (generation != mGeneration.get()) {
+                return null;
+            }
+            if (indices[i] >= 0) {
+                rows[i] = buildRow(indices[i], minute);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Drops the rows being built.
+     */
+    void cancel() {
+        mGeneration.incrementAndGet();
+    }
+
+    private TimeZoneRow buildRow(int index, long minute) {
+        TimeZoneInfo tzi = mTimeZoneData.get(index);
+        return new TimeZoneRow(index, tzi, tzi.mDisplayName, tzi.getGmtDisplayName(mContext),
+                tzi.mCountry, minute);
+    }
+
+    private void deliver(final int generation, final int[] indices, final TimeZoneRow[] rows,
+            final Callback callback) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration.get()) {
+                    callback.onRowsBuilt(indices, rows);
+                }
+            }
+        });
+    }
+}
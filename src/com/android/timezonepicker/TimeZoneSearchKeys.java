@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Search keys for the countries of a {@link TimeZoneData}, computed once per
+ * locale when the catalog is loaded so that filtering only compares
+ * precomputed strings and ints.
+ *
+ * Keys are accent-folded and case-folded with {@link #fold}, so "cote" finds
+ * C\u00f4te d'Ivoire and "ISTANBUL" works under a Turkish locale. Countries are
+ * ranked with the locale's {@link Collator}.
+ */
+class TimeZoneSearchKeys {
+    final Locale mLocale;
+
+    /** Country display names, in TimeZoneData.mTimeZonesByCountry order */
+    final String[] mCountries;
+    /** Folded country names */
+    final String[] mCountryKeys;
+    /** Folded words of each country name, e.g. "south", "korea" */
+    final String[][] mCountryWords;
+    /** Position of each country in collation order */
+    final int[] mCountrySortRanks;
+    /** Country indices in collation order */
+    final int[] mCountriesByRank;
+
+    private final HashMap<String, Integer> mCountryIndices;
+
+    TimeZoneSearchKeys(Collection<String> countries, Locale locale) {
+        mLocale = locale;
+
+        ArrayList<String> names = new ArrayList<String>(countries.size());
+        for (String country : countries) {
+            if (country != null && country.length() > 0) {
+                names.add(country);
+            }
+        }
+
+        final int size = names.size();
+        mCountries = names.toArray(new String[size]);
+        mCountryKeys = new String[size];
+        mCountryWords = new String[size][];
+        mCountryIndices = new HashMap<String, Integer>(size);
+        for (int i = 0; i < size; i++) {
+            mCountryIndices.put(mCountries[i], i);
+            mCountryKeys[i] = fold(mCountries[i], locale);
+            mCountryWords[i] = splitWords(mCountryKeys[i]);
+        }
+
+        final Collator collator = Collator.getInstance(locale);
+        final CollationKey[] collationKeys = new CollationKey[size];
+        Integer[] byRank = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            collationKeys[i] = collator.getCollationKey(mCountries[i]);
+            byRank[i] = i;
+        }
+        Arrays.sort(byRank, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return collationKeys[lhs].compareTo(collationKeys[rhs]);
+            }
+        });
+
+        mCountrySortRanks = new int[size];
+        mCountriesByRank = new int[size];
+        for (int rank = 0; rank < size; rank++) {
+            mCountriesByRank[rank] = byRank[rank];
+            mCountrySortRanks[byRank[rank]] = rank;
+        }
+    }
+
+    int size() {
+        return mCountries.length;
+    }
+
+    /**
+     * @return the index of the country with the given display name, or -1
+     */
+    int indexOfCountry(String country) {
+        Integer index = country == null ? null : mCountryIndices.get(country);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Strips accents and lowercases str with the rules of locale. The dotless
+     * i is folded onto i so that Turkish and non-Turkish input meet.
+     */
+    static String fold(String str, Locale locale) {
+        String decomposed = Normalizer.normalize(str, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char ch = decomposed.charAt(i);
+            if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+                sb.append(ch);
+            }
+        }
+
+        String folded = sb.toString().toLowerCase(locale);
+        return folded.indexOf('\u0131') == -1 ? folded : folded.replace('\u0131', 'i');
+    }
+
+    /**
+     * Returns the words of a folded string. Words are separated by spaces.
+     */
+    static String[] splitWords(String key) {
+        if (key.indexOf(' ') == -1) {
+            return new String[] { key };
+        }
+
+        ArrayList<String> words = new ArrayList<String>();
+        for (String word : key.split(" ")) {
+            if (word.length() > 0) {
+                words.add(word);
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+/**
+ * Keeps the k best of a stream of candidates in a bounded min-heap, so that
+ * picking the top k of n candidates costs O(n log k) instead of a full sort.
+ *
+ * A candidate is an int score (higher is better) and an int tie breaker
+ * (lower is better, e.g. a sort rank). Both are packed into one long so that
+ * offering a candidate doesn't allocate.
+ */
+class TopKSelector {
+    private static final int TIE_BREAKER_BITS = 24;
+    private static final long TIE_BREAKER_MASK = (1L << TIE_BREAKER_BITS) - 1;
+
+    private final long[] mHeap;
+    private int mSize;
+
+    TopKSelector(int k) {
+        mHeap = new long[Math.max(k, 0)];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @param score higher scores win
+     * @param tieBreaker lower values win among equal scores. Must be in
+     *            [0, 2^24).
+     */
+    void offer(int score, int tieBreaker) {
+        if (mHeap.length == 0) {
+            return;
+        }
+
+        final long key = ((long) score << TIE_BREAKER_BITS)
+                | (TIE_BREAKER_MASK - (tieBreaker & TIE_BREAKER_MASK));
+        if (mSize < mHeap.length) {
+            mHeap[mSize] = key;
+            siftUp(mSize++);
+        } else if (key > mHeap[0]) {
+            mHeap[0] = key;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Empties the selector into outTieBreakers, best candidate first.
+     *
+     * @return the number of candidates written
+     */
+    int drainTieBreakers(int[] outTieBreakers) {
+        final int count = mSize;
+        for (int i = count - 1; i >= 0; i--) {
+            // The root is the worst remaining candidate
+            outTieBreakers[i] = (int) (TIE_BREAKER_MASK - (mHeap[0] & TIE_BREAKER_MASK));
+            mHeap[0] = mHeap[--mSize];
+            siftDown(0);
+        }
+        return count;
+    }
+
+    private void siftUp(int pos) {
+        final long key = mHeap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (mHeap[parent] <= key) {
+                break;
+            }
+            mHeap[pos] = mHeap[parent];
+            pos = parent;
+        }
+        mHeap[pos] = key;
+    }
+
+    private void siftDown(int pos) {
+        if (mSize == 0) {
+            return;
+        }
+        final long key = mHeap[pos];
+        final int half = mSize >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            if (child + 1 < mSize && mHeap[child + 1] < mHeap[child]) {
+                child++;
+            }
+            if (key <= mHeap[child]) {
+                break;
+            }
+            mHeap[pos] = mHeap[child];
+            pos = child;
+        }
+        mHeap[pos] = key;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.timezonepicker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the tab separated tzdata text files, zone.tab, zone1970.tab and
+ * backward, a line at a time.
+ *
+ * The file is read into one byte array. Fields are slices of it, so reading
+ * a line allocates nothing; strings are only created for the fields that
+ * are kept. Comment lines, starting with '#', and empty lines are skipped.
+ * Runs of tabs separate fields, as in backward.
+ */
+class TzDataTabReader {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int MAX_FIELDS = 8;
+    private static final int INITIAL_BUFFER_SIZE = 32 * 1024;
+
+    /** Country code strings, shared by all readers. See {@link #getCountryCode} */
+    private static final String[] sCountryCodes = new String[26 * 26];
+
+    private byte[] mBuffer;
+    private int mLength;
+    private int mPos;
+
+    private final int[] mFieldStarts = new int[MAX_FIELDS];
+    private final int[] mFieldEnds = new int[MAX_FIELDS];
+    private int mFieldCount;
+
+    /**
+     * Reads all of is, but doesn't close it.
+     */
+    TzDataTabReader(InputStream is) throws IOException {
+        mBuffer = new byte[Math.max(is.available(), INITIAL_BUFFER_SIZE)];
+        int read;
+        while ((read = is.read(mBuffer, mLength, mBuffer.length - mLength)) != -1) {
+            mLength += read;
+            if (mLength == mBuffer.length) {
+                byte[] buffer = new byte[mBuffer.length * 2];
+                System.arraycopy(mBuffer, 0, buffer, 0, mLength);
+                mBuffer = buffer;
+            }
+        }
+    }
+
+    /**
+     * Moves to the next line that isn't empty or a comment.
+     *
+     * @return false at the end of the file
+     */
+    boolean nextLine() {
+        final byte[] buffer = mBuffer;
+        while (mPos < mLength) {
+            int end = mPos;
+            while (end < mLength && buffer[end] != '\n') {
+                end++;
+            }
+            final int start = mPos;
+            mPos = end + 1;
+            if (end > start && buffer[end - 1] == '\r') {
+                end--;
+            }
+            if (end == start || buffer[start] == '#') {
+                continue;
+            }
+
+            mFieldCount = 0;
+            int pos = start;
+            while (pos < end && mFieldCount < MAX_FIELDS) {
+                while (pos < end && buffer[pos] == '\t') {
+                    pos++;
+                }
+                if (pos == end) {
+                    break;
+                }
+                mFieldStarts[mFieldCount] = pos;
+                while (pos < end && buffer[pos] != '\t') {
+                    pos++;
+                }
+                mFieldEnds[mFieldCount++] = pos;
+            }
+            if (mFieldCount > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int getFieldCount() {
+        return mFieldCount;
+    }
+
+    int getFieldLength(int field) {
+        return mFieldEnds[field] - mFieldStarts[field];
+    }
+
+    byte getFieldByte(int field, int i) {
+        return mBuffer[mFieldStarts[field] + i];
+    }
+
+    String getString(int field) {
+        return new String(mBuffer, mFieldStarts[field], getFieldLength(field), ASCII);
+    }
+
+    /**
+     * Parses the ISO 6709 coordinates in the field.
+     *
+     * @see TimeZoneLocationIndex#parseIso6709
+     */
+    boolean getCoordinates(int field, float[] out) {
+        return TimeZoneLocationIndex.parseIso6709(mBuffer, mFieldStarts[field],
+                mFieldEnds[field], out);
+    }
+
+    /**
+     * Returns how many country codes the field lists, e.g. 3 for "CH,DE,LI"
+     * in zone1970.tab. Codes are only counted up to the first malformed one.
+     */
+    int getCountryCodeCount(int field) {
+        int count = 0;
+        while (getCountryCode(field, count) != null) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first country code of the field, the one the zone is
+     * named after in zone1970.tab.
+     *
+     * @return the code, or null if the field doesn't start with one
+     */
+    String getCountryCode(int field) {
+        return getCountryCode(field, 0);
+    }
+
+    /**
+     * Returns a country code of the comma separated list in the field, e.g.
+     * "DE" for index 1 of "CH,DE,LI". The strings are shared, so the catalog
+     * keeps one per country.
+     *
+     * @return the code, or null if there is no such code
+     */
+    String getCountryCode(int field, int index) {
+        final int start = index * 3;
+        final int length = getFieldLength(field);
+        if (length < start + 2
+                || (length > start + 2 && getFieldByte(field, start + 2) != ',')) {
+            return null;
+        }
+        final int first = getFieldByte(field, start) - 'A';
+        final int second = getFieldByte(field, start + 1) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return null;
+        }
+
+        final int slot = first * 26 + second;
+        String code = sCountryCodes[slot];
+        if (code == null) {
+            code = new String(mBuffer, mFieldStarts[field] + start, 2, ASCII);
+            sCountryCodes[slot] = code;
+        }
+        return code;
+    }
+}
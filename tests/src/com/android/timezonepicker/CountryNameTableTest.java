@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.content.res.Resources;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Locale;
+
+/**
+ * Tests for {@link CountryNameTable}.
+ */
+@RunWith(JUnit4.class)
+public class CountryNameTableTest {
+    private Resources mRes;
+
+    @Before
+    public void setUp() {
+        mRes = InstrumentationRegistry.getInstrumentation().getTargetContext().getResources();
+    }
+
+    @Test
+    public void get_namesInLocale() {
+        assertEquals("Germany", CountryNameTable.get(mRes, Locale.US).get("DE"));
+        assertEquals("Deutschland", CountryNameTable.get(mRes, Locale.GERMANY).get("DE"));
+    }
+
+    @Test
+    public void get_codeFallback() {
+        CountryNameTable table = CountryNameTable.get(mRes, Locale.US);
+        assertEquals("Germany", table.get("de"));
+        assertEquals("XYZ", table.get("XYZ"));
+        assertEquals(mRes.getString(R.string.palestine_display_name), table.get("PS"));
+    }
+
+    @Test
+    public void get_sharedPerLocale() {
+        assertSame(CountryNameTable.get(mRes, Locale.FRANCE),
+                CountryNameTable.get(mRes, Locale.FRANCE));
+    }
+
+    @Test
+    public void get_bounded() {
+        CountryNameTable first = CountryNameTable.get(mRes, Locale.ITALY);
+        for (Locale locale : new Locale[] { Locale.JAPAN, Locale.KOREA, Locale.CHINA,
+                Locale.CANADA_FRENCH, Locale.UK }) {
+            CountryNameTable.get(mRes, locale);
+        }
+        // Dropped to make room, so built again
+        assertNotSame(first, CountryNameTable.get(mRes, Locale.ITALY));
+    }
+}
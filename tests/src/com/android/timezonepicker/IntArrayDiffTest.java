@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Tests for {@link IntArrayDiff}.
+ */
+@RunWith(JUnit4.class)
+public class IntArrayDiffTest {
+
+    /**
+     * Applies the changes to a copy of the old list, like a RecyclerView
+     * would, with placeholders for inserted items.
+     */
+    private static class Recorder implements IntArrayDiff.Callback {
+        static final int INSERTED = -1;
+
+        final ArrayList<Integer> list = new ArrayList<Integer>();
+        int removes;
+        int inserts;
+        int moves;
+
+        Recorder(int[] ids, int length) {
+            for (int i = 0; i < length; i++) {
+                list.add(ids[i]);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                list.remove(position);
+            }
+            removes++;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                list.add(position, INSERTED);
+            }
+            inserts++;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            list.add(toPosition, list.remove(fromPosition));
+            moves++;
+        }
+
+        /** Checks that the list is newIds, with inserts where ids are new */
+        void assertResult(int[] oldIds, int oldLength, int[] newIds, int newLength) {
+            assertEquals(newLength, list.size());
+            for (int i = 0; i < newLength; i++) {
+                int id = list.get(i);
+                if (id == INSERTED) {
+                    for (int j = 0; j < oldLength; j++) {
+                        assertTrue(newIds[i] + " was there already", oldIds[j] != newIds[i]);
+                    }
+                } else {
+                    assertEquals(newIds[i], id);
+                }
+            }
+        }
+    }
+
+    private static Recorder diff(int[] oldIds, int[] newIds) {
+        Recorder recorder = new Recorder(oldIds, oldIds.length);
+        IntArrayDiff.dispatch(oldIds, oldIds.length, newIds, newIds.length, recorder);
+        recorder.assertResult(oldIds, oldIds.length, newIds, newIds.length);
+        return recorder;
+    }
+
+    @Test
+    public void narrowing_onlyRemoves() {
+        Recorder recorder = diff(new int[] { 1, 2, 3, 4, 5, 6 }, new int[] { 2, 3, 6 });
+        assertEquals(0, recorder.inserts);
+        assertEquals(0, recorder.moves);
+        // 1, and 4 and 5
+        assertEquals(2, recorder.removes);
+    }
+
+    @Test
+    public void widening_onlyInserts() {
+        Recorder recorder = diff(new int[] { 2, 3, 6 }, new int[] { 1, 2, 3, 4, 5, 6, 7 });
+        assertEquals(0, recorder.removes);
+        assertEquals(0, recorder.moves);
+        // 1, 4 and 5, and 7
+        assertEquals(3, recorder.inserts);
+    }
+
+    @Test
+    public void unchanged() {
+        Recorder recorder = diff(new int[] { 4, 8, 15 }, new int[] { 4, 8, 15 });
+        assertEquals(0, recorder.removes + recorder.inserts + recorder.moves);
+    }
+
+    @Test
+    public void emptyLists() {
+        diff(new int[0], new int[] { 1, 2 });
+        diff(new int[] { 1, 2 }, new int[0]);
+        diff(new int[0], new int[0]);
+    }
+
+    @Test
+    public void move() {
+        Recorder recorder = diff(new int[] { 1, 2, 3, 4 }, new int[] { 4, 1, 2, 3 });
+        assertEquals(1, recorder.moves);
+    }
+
+    @Test
+    public void randomLists() {
+        Random random = new Random(0);
+        for (int round = 0; round < 200; round++) {
+            ArrayList<Integer> ids = new ArrayList<Integer>();
+            for (int i = 0; i < 40; i++) {
+                ids.add(i);
+            }
+            diff(pick(ids, random), pick(ids, random));
+        }
+    }
+
+    /** A random subset of ids, in a random order half the time */
+    private static int[] pick(ArrayList<Integer> ids, Random random) {
+        ArrayList<Integer> picked = new ArrayList<Integer>();
+        for (int id : ids) {
+            if (random.nextBoolean()) {
+                picked.add(id);
+            }
+        }
+        if (random.nextBoolean()) {
+            Collections.shuffle(picked, random);
+        }
+        int[] out = new int[picked.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = picked.get(i);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for how {@link TimeZoneCatalogReloader} follows the device's time
+ * zone.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneCatalogReloaderTest {
+    // 2013-07-01 12:00 UTC
+    private static final long TIME_MILLIS = 1372680000000L;
+
+    private Context mContext;
+    private TimeZoneData mCatalog;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mCatalog = new TimeZoneData(mContext, "America/Denver", TIME_MILLIS);
+    }
+
+    @Test
+    public void followsDeviceTimeZone() {
+        // Opened for the device's zone
+        assertTrue(TimeZoneCatalogReloader.followsDeviceTimeZone(mCatalog, "America/Denver",
+                "Europe/Paris"));
+        // Opened for another zone, e.g. an event's
+        assertFalse(TimeZoneCatalogReloader.followsDeviceTimeZone(mCatalog, "Asia/Tokyo",
+                "Europe/Paris"));
+        // Same zone again
+        assertFalse(TimeZoneCatalogReloader.followsDeviceTimeZone(mCatalog, "America/Denver",
+                "America/Denver"));
+        assertFalse(TimeZoneCatalogReloader.followsDeviceTimeZone(mCatalog, null,
+                "Europe/Paris"));
+    }
+
+    @Test
+    public void reload_newDefaultTimeZone() {
+        TimeZoneQueryEngine current = new TimeZoneQueryEngine(mCatalog);
+        TimeZoneInfo first = mCatalog.get(0);
+        int size = mCatalog.size();
+
+        TimeZoneQueryEngine engine = TimeZoneCatalogReloader.reload(mContext, current,
+                "Europe/Paris");
+        TimeZoneData tzd = engine.getTimeZoneData();
+        assertNotSame(mCatalog, tzd);
+        assertEquals("Europe/Paris", tzd.get(tzd.getDefaultTimeZoneIndex()).mTzId);
+        assertEquals(TIME_MILLIS, tzd.getTime());
+
+        // The current catalog is left as it was
+        assertEquals("America/Denver",
+                mCatalog.get(mCatalog.getDefaultTimeZoneIndex()).mTzId);
+        assertEquals(size, mCatalog.size());
+        assertSame(first, mCatalog.get(0));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+
+/**
+ * Tests for the catalog state that {@link TimeZoneData} publishes.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneCatalogSnapshotTest {
+    // 2013-07-01 12:00 UTC
+    private static final long JULY_MILLIS = 1372680000000L;
+    // 2013-01-01 12:00 UTC
+    private static final long JANUARY_MILLIS = 1357041600000L;
+
+    private TimeZoneData mTimeZoneData;
+    private int mLosAngeles;
+
+    @Before
+    public void setUp() {
+        mTimeZoneData = new TimeZoneData(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                "America/Los_Angeles", JULY_MILLIS);
+        mLosAngeles = mTimeZoneData.getDefaultTimeZoneIndex();
+        assertTrue(mLosAngeles >= 0);
+    }
+
+    @Test
+    public void getTimeZonesByOffset_atCatalogTime() {
+        assertTrue(mTimeZoneData.getTimeZonesByOffset(-7).contains(mLosAngeles));
+        assertFalse(mTimeZoneData.getTimeZonesByOffset(-8).contains(mLosAngeles));
+    }
+
+    @Test
+    public void setTime_regroupsByOffset() {
+        TimeZoneCatalogSnapshot july = mTimeZoneData.getSnapshot();
+        mTimeZoneData.setTime(JANUARY_MILLIS);
+
+        assertTrue(mTimeZoneData.getTimeZonesByOffset(-8).contains(mLosAngeles));
+        assertFalse(mTimeZoneData.getTimeZonesByOffset(-7).contains(mLosAngeles));
+        // The old snapshot doesn't change
+        assertTrue(july.getTimeZonesByOffset(-7).contains(mLosAngeles));
+        assertEquals(JULY_MILLIS, july.timeMillis);
+        assertSame(july.timeZones, mTimeZoneData.getSnapshot().timeZones);
+    }
+
+    @Test
+    public void getTimeZonesByOffset_outOfRange() {
+        assertNull(mTimeZoneData.getTimeZonesByOffset(-100));
+        assertNull(mTimeZoneData.getTimeZonesByOffset(100));
+        assertFalse(mTimeZoneData.hasTimeZonesInHrOffset(100));
+    }
+
+    @Test
+    public void queries_dontChangeTheCatalog() {
+        mTimeZoneData.getTimeZonesByOffset(-7).clear();
+        assertTrue(mTimeZoneData.getTimeZonesByOffset(-7).contains(mLosAngeles));
+        try {
+            mTimeZoneData.getSnapshot().getTimeZonesByOffset(-7).clear();
+            fail("The snapshot's offset groups are modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            mTimeZoneData.getSnapshot().timeZones.remove(0);
+            fail("timeZones is modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+}
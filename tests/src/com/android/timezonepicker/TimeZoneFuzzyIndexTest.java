@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link TimeZoneFuzzyIndex}.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneFuzzyIndexTest {
+    // 2013-07-01 12:00 UTC
+    private static final long TIME_MILLIS = 1372680000000L;
+    private static final long BUDGET_NANOS = Long.MAX_VALUE / 2;
+
+    private static int editDistance(String term, String query, int limit) {
+        return TimeZoneFuzzyIndex.editDistance(term, query, limit,
+                new int[query.length() + 1], new int[query.length() + 1]);
+    }
+
+    @Test
+    public void editDistance_exact() {
+        assertEquals(0, editDistance("japan", "japan", Integer.MAX_VALUE));
+        assertEquals(3, editDistance("kitten", "sitting", Integer.MAX_VALUE));
+        assertEquals(1, editDistance("iran", "iraq", Integer.MAX_VALUE));
+        assertEquals(4, editDistance("", "oman", Integer.MAX_VALUE));
+        assertEquals(4, editDistance("oman", "", Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void editDistance_givesUpBeyondLimit() {
+        assertEquals(2, editDistance("kitten", "sitting", 1));
+        assertEquals(3, editDistance("kitten", "sitting", 3));
+        assertEquals(1, editDistance("abcdef", "uvwxyz", 0));
+    }
+
+    @Test
+    public void search_withinDistance() {
+        TimeZoneData tzd = new TimeZoneData(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                "America/Los_Angeles", TIME_MILLIS);
+        TimeZoneSearchKeys keys = tzd.mSearchKeys;
+        TimeZoneFuzzyIndex index = tzd.getFuzzyIndex();
+        int[] distances = new int[keys.size()];
+
+        assertTrue(index.search("phillipines", 2, BUDGET_NANOS, distances) > 0);
+        int philippines = keys.indexOfCountry("Philippines");
+        // One l too many, one p too few
+        assertEquals(2, distances[philippines]);
+
+        index.search("phillipines", 1, BUDGET_NANOS, distances);
+        assertEquals(Integer.MAX_VALUE, distances[philippines]);
+        assertEquals(0, index.search("phillipines", 0, BUDGET_NANOS, distances));
+        assertEquals(0, index.search("qqqqqqqqqq", 2, BUDGET_NANOS, distances));
+
+        // A larger distance finds at least the same countries, at the same
+        // distances
+        int[] wider = new int[keys.size()];
+        int narrowCount = index.search("kazakstan", 1, BUDGET_NANOS, distances);
+        int wideCount = index.search("kazakstan", 3, BUDGET_NANOS, wider);
+        assertTrue(narrowCount > 0);
+        assertTrue(wideCount >= narrowCount);
+        for (int i = 0; i < keys.size(); i++) {
+            if (distances[i] != Integer.MAX_VALUE) {
+                assertEquals(distances[i], wider[i]);
+            } else if (wider[i] != Integer.MAX_VALUE) {
+                assertTrue(wider[i] > 1 && wider[i] <= 3);
+            }
+        }
+    }
+}
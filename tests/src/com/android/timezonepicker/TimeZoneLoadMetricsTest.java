@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the metrics reported when a {@link TimeZoneData} is loaded.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneLoadMetricsTest {
+    // 2013-07-01 12:00 UTC
+    private static final long TIME_MILLIS = 1372680000000L;
+
+    private TimeZoneLoadMetrics mMetrics;
+
+    @After
+    public void tearDown() {
+        TimeZoneData.setLoadMetricsListener(null);
+    }
+
+    @Test
+    public void load_reportsPhases() {
+        TimeZoneData.setLoadMetricsListener(new TimeZoneLoadMetrics.Listener() {
+            @Override
+            public void onTimeZonesLoaded(TimeZoneLoadMetrics metrics) {
+                mMetrics = metrics;
+            }
+        });
+        TimeZoneData tzd = new TimeZoneData(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                "America/Los_Angeles", TIME_MILLIS);
+
+        assertNotNull(mMetrics);
+        assertEquals(tzd.size(), mMetrics.getCatalogSize());
+        assertTrue(mMetrics.getZonesProcessed() >= tzd.size());
+
+        // Dedup runs within the zone.tab and available ids phases
+        long dedup = mMetrics.getPhaseNanos(TimeZoneLoadMetrics.PHASE_DEDUP);
+        assertTrue(dedup > 0);
+        assertTrue(dedup <= mMetrics.getPhaseNanos(TimeZoneLoadMetrics.PHASE_ZONE_TAB)
+                + mMetrics.getPhaseNanos(TimeZoneLoadMetrics.PHASE_AVAILABLE_IDS));
+        assertTrue(mMetrics.getTotalNanos()
+                >= mMetrics.getPhaseNanos(TimeZoneLoadMetrics.PHASE_ZONE_TAB));
+    }
+}
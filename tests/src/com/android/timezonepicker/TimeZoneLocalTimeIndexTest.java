@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the search by local time, {@link TimeZoneLocalTimeIndex}.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneLocalTimeIndexTest {
+    // 2013-07-01 12:00 UTC
+    private static final long JULY_MILLIS = 1372680000000L;
+    // 2013-01-01 12:00 UTC
+    private static final long JANUARY_MILLIS = 1357041600000L;
+    private static final int MINUTES_PER_DAY = TimeZoneLocalTimeIndex.MINUTES_PER_DAY;
+
+    private TimeZoneData mTimeZoneData;
+
+    @Before
+    public void setUp() {
+        mTimeZoneData = new TimeZoneData(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                "Europe/Paris", JULY_MILLIS);
+    }
+
+    /** Checks every zone, the way the index must agree with */
+    private List<Integer> findSlow(int fromMinute, int toMinute, long millis) {
+        ArrayList<Integer> results = new ArrayList<Integer>();
+        int utcMinute = (int) (millis / 60000 % MINUTES_PER_DAY);
+        for (int i = 0; i < mTimeZoneData.size(); i++) {
+            int offset = mTimeZoneData.get(i).mTz.getOffset(millis) / 60000;
+            int local = ((utcMinute + offset) % MINUTES_PER_DAY + MINUTES_PER_DAY)
+                    % MINUTES_PER_DAY;
+            int fromLocal = ((local - fromMinute) % MINUTES_PER_DAY + MINUTES_PER_DAY)
+                    % MINUTES_PER_DAY;
+            int length = ((toMinute - fromMinute) % MINUTES_PER_DAY + MINUTES_PER_DAY)
+                    % MINUTES_PER_DAY;
+            if (fromLocal < length) {
+                results.add(i);
+            }
+        }
+        return results;
+    }
+
+    private int indexOf(String id) {
+        for (int i = 0; i < mTimeZoneData.size(); i++) {
+            if (mTimeZoneData.get(i).mTzId.equals(id)) {
+                return i;
+            }
+        }
+        throw new AssertionError(id + " not in catalog");
+    }
+
+    private boolean matches(int minuteOfDay, String id) {
+        return mTimeZoneData.getTimeZonesByLocalTime(minuteOfDay).contains(indexOf(id));
+    }
+
+    @Test
+    public void getTimeZonesByLocalTime_atCatalogTime() {
+        // 14:00 in Paris in July, 13:00 in January
+        assertTrue(matches(14 * 60, "Europe/Paris"));
+        assertFalse(matches(14 * 60, "Asia/Tokyo"));
+
+        mTimeZoneData.setTime(JANUARY_MILLIS);
+        assertTrue(matches(13 * 60, "Europe/Paris"));
+        assertFalse(matches(14 * 60, "Europe/Paris"));
+    }
+
+    @Test
+    public void getTimeZonesByLocalTime_halfHourOffset() {
+        // 17:30 in Kolkata
+        assertTrue(matches(17 * 60 + 30, "Asia/Kolkata"));
+    }
+
+    @Test
+    public void find_matchesEveryZoneInCatalogOrder() {
+        TimeZoneLocalTimeIndex index = mTimeZoneData.getLocalTimeIndex();
+        for (long millis : new long[] { JULY_MILLIS, JANUARY_MILLIS, JULY_MILLIS + 1800000 }) {
+            for (int from = 0; from < MINUTES_PER_DAY; from += 45) {
+                int to = (from + 120) % MINUTES_PER_DAY;
+                assertEquals("from " + from + " at " + millis, findSlow(from, to, millis),
+                        index.find(from, to, millis));
+            }
+        }
+    }
+}
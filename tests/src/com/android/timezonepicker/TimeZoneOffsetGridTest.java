@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import android.text.format.DateUtils;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.TimeZone;
+
+/**
+ * Tests for {@link TimeZoneOffsetGrid} and the grids of {@link TimeZoneData}.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneOffsetGridTest {
+    // 2013-01-01 00:00 UTC
+    private static final long YEAR_START_MILLIS = 1356998400000L;
+    // 2013-07-01 12:00 UTC
+    private static final long TIME_MILLIS = 1372680000000L;
+
+    private static final String[] IDS = {
+        "Europe/Paris", "America/Los_Angeles", "Australia/Lord_Howe", "Asia/Kathmandu",
+        "America/St_Johns", "Pacific/Apia", "UTC",
+    };
+
+    /** Looks up every cell, as the grid would without skipping */
+    private static int expected(TimeZone tz, long millis, boolean minuteOfDay) {
+        final int offset = tz.getOffset(millis);
+        if (!minuteOfDay) {
+            return offset / (int) DateUtils.MINUTE_IN_MILLIS;
+        }
+        // Whole days first, so that times before the epoch stay positive
+        final long local = millis + offset + 1000 * DateUtils.DAY_IN_MILLIS;
+        return (int) (local % DateUtils.DAY_IN_MILLIS / DateUtils.MINUTE_IN_MILLIS);
+    }
+
+    private static void assertGrid(String id, long startMillis, long stepMillis, int count,
+            boolean minuteOfDay) {
+        final TimeZone tz = TimeZone.getTimeZone(id);
+        final int[] out = new int[count + 2];
+        out[0] = -1;
+        out[count + 1] = -1;
+        TimeZoneOffsetGrid.fill(tz, startMillis, stepMillis, count, minuteOfDay, out, 1);
+        assertEquals(-1, out[0]);
+        assertEquals(-1, out[count + 1]);
+        for (int i = 0; i < count; i++) {
+            assertEquals(id + " cell " + i + " step " + stepMillis,
+                    expected(tz, startMillis + i * stepMillis, minuteOfDay), out[i + 1]);
+        }
+    }
+
+    @Test
+    public void fill_acrossTransitions() {
+        // Every spring and fall transition of the year, at several steps,
+        // including ones that don't divide an hour and ones over a day
+        final long[] steps = {
+            DateUtils.HOUR_IN_MILLIS, 7 * DateUtils.MINUTE_IN_MILLIS,
+            DateUtils.DAY_IN_MILLIS, 3 * DateUtils.DAY_IN_MILLIS + 1,
+        };
+        for (String id : IDS) {
+            for (long step : steps) {
+                final int count = (int) (366 * DateUtils.DAY_IN_MILLIS / step);
+                assertGrid(id, YEAR_START_MILLIS, step, count, false);
+                assertGrid(id, YEAR_START_MILLIS, step, count, true);
+            }
+        }
+    }
+
+    @Test
+    public void fill_springForwardInParis() {
+        // 2013-03-31 01:00 UTC, clocks went from 02:00 to 03:00
+        final long transition = 1364691600000L;
+        final int[] out = new int[4];
+        TimeZoneOffsetGrid.fill(TimeZone.getTimeZone("Europe/Paris"),
+                transition - 2 * DateUtils.HOUR_IN_MILLIS, DateUtils.HOUR_IN_MILLIS, 4, true,
+                out, 0);
+        assertEquals(0, out[0]);
+        assertEquals(60, out[1]);
+        assertEquals(3 * 60, out[2]);
+        assertEquals(4 * 60, out[3]);
+    }
+
+    @Test
+    public void fill_beforeEpoch() {
+        assertGrid("America/Los_Angeles", -DateUtils.DAY_IN_MILLIS - 30 * 1000,
+                DateUtils.HOUR_IN_MILLIS, 48, true);
+    }
+
+    @Test
+    public void fill_emptyAndSingle() {
+        final int[] out = { 7 };
+        TimeZoneOffsetGrid.fill(TimeZone.getTimeZone("Asia/Kathmandu"), TIME_MILLIS,
+                DateUtils.HOUR_IN_MILLIS, 0, false, out, 0);
+        assertEquals(7, out[0]);
+        TimeZoneOffsetGrid.fill(TimeZone.getTimeZone("Asia/Kathmandu"), TIME_MILLIS,
+                DateUtils.HOUR_IN_MILLIS, 1, false, out, 0);
+        assertEquals(5 * 60 + 45, out[0]);
+    }
+
+    @Test
+    public void timeZoneData_grids() {
+        final TimeZoneData tzd = new TimeZoneData(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                "America/Los_Angeles", TIME_MILLIS);
+        final int[] indices = { 0, tzd.getDefaultTimeZoneIndex(), tzd.size() - 1 };
+        final int count = 30;
+        final long step = 5 * DateUtils.HOUR_IN_MILLIS;
+        final int[] offsets = tzd.getOffsetGrid(indices, YEAR_START_MILLIS, step, count);
+        final int[] times = tzd.getLocalTimeGrid(indices, YEAR_START_MILLIS, step, count);
+        assertEquals(indices.length * count, offsets.length);
+        assertEquals(indices.length * count, times.length);
+        for (int row = 0; row < indices.length; row++) {
+            TimeZone tz = tzd.get(indices[row]).mTz;
+            for (int i = 0; i < count; i++) {
+                long millis = YEAR_START_MILLIS + i * step;
+                assertEquals(expected(tz, millis, false), offsets[row * count + i]);
+                assertEquals(expected(tz, millis, true), times[row * count + i]);
+            }
+        }
+
+        try {
+            tzd.getOffsetGrid(indices, YEAR_START_MILLIS, step, count,
+                    new int[indices.length * count - 1]);
+            fail("Grid filled into too small an array");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link TimeZonePickerPrewarm} and the caches it warms up.
+ */
+@RunWith(JUnit4.class)
+public class TimeZonePickerPrewarmTest {
+    private static final String TIME_ZONE = "Europe/Paris";
+    // 2013-07-01 12:00 UTC
+    private static final long TIME_MILLIS = 1372680000000L;
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    private static void waitUntilReady(TimeZonePickerPrewarm prewarm) throws Exception {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!prewarm.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(prewarm.isReady());
+    }
+
+    @Test
+    public void getLatestIfReady_scopedToContext() throws Exception {
+        Context picker = new ContextWrapper(mContext);
+        Context otherPicker = new ContextWrapper(mContext);
+        TimeZonePickerPrewarm prewarm = TimeZonePickerPrewarm.start(picker, TIME_ZONE,
+                TIME_MILLIS);
+        waitUntilReady(prewarm);
+
+        TimeZoneQueryEngine engine = TimeZonePickerPrewarm.getLatestIfReady(picker, TIME_ZONE,
+                TIME_MILLIS);
+        assertNotNull(engine);
+        assertSame(engine, prewarm.getIfReady(TIME_ZONE, TIME_MILLIS));
+        assertNull(TimeZonePickerPrewarm.getLatestIfReady(otherPicker, TIME_ZONE,
+                TIME_MILLIS));
+        assertNull(TimeZonePickerPrewarm.getLatestIfReady(picker, TIME_ZONE,
+                TIME_MILLIS + 1));
+    }
+
+    @Test
+    public void getLatestIfReady_applicationPrewarmForAllPickers() throws Exception {
+        // Another time zone, so a pre-warm of another test doesn't match
+        Context application = mContext.getApplicationContext();
+        TimeZonePickerPrewarm prewarm = TimeZonePickerPrewarm.start(application, "Asia/Tokyo",
+                TIME_MILLIS);
+        waitUntilReady(prewarm);
+
+        assertNotNull(TimeZonePickerPrewarm.getLatestIfReady(new ContextWrapper(mContext),
+                "Asia/Tokyo", TIME_MILLIS));
+    }
+
+    @Test
+    public void recents_awaitLoaded() {
+        RecentTimeZoneStore recents = RecentTimeZoneStore.getInstance(mContext);
+        assertTrue(recents.awaitLoaded());
+        assertTrue(recents.isLoaded());
+    }
+
+    @Test
+    public void getGmtDisplayName_concurrentCallers() throws Exception {
+        final TimeZoneData tzd = new TimeZoneData(mContext, TIME_ZONE, TIME_MILLIS);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < tzd.size(); i++) {
+                        TimeZoneInfo tzi = tzd.get(i);
+                        String name = tzi.getGmtDisplayName(mContext).toString();
+                        if (!name.contains("GMT")) {
+                            failure.set(tzi.mTzId + ": " + name);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+}
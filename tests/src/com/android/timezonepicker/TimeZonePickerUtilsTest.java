@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for the display name cache of {@link TimeZonePickerUtils}.
+ */
+@RunWith(JUnit4.class)
+public class TimeZonePickerUtilsTest {
+    // 2013-07-01 12:00 UTC
+    private static final long TIME_MILLIS = 1372680000000L;
+
+    private Context mContext;
+    private TimeZonePickerUtils mUtils;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mUtils = new TimeZonePickerUtils(mContext);
+    }
+
+    @Test
+    public void getGmtDisplayName_returnsCopies() {
+        CharSequence first = mUtils.getGmtDisplayName(mContext, "Asia/Tokyo", TIME_MILLIS, true);
+        CharSequence second = mUtils.getGmtDisplayName(mContext, "Asia/Tokyo", TIME_MILLIS, true);
+        assertNotSame(first, second);
+        assertEquals(first.toString(), second.toString());
+    }
+
+    @Test
+    public void getGmtDisplayNames_matchesSingleLookups() {
+        String[] ids = { "Asia/Tokyo", "Asia/Tokyo", null, "Europe/Paris", "Asia/Tokyo" };
+        CharSequence[] names = mUtils.getGmtDisplayNames(mContext, ids, TIME_MILLIS, false);
+        assertEquals(ids.length, names.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == null) {
+                assertNull(names[i]);
+            } else {
+                assertEquals(mUtils.getGmtDisplayName(mContext, ids[i], TIME_MILLIS, false)
+                        .toString(), names[i].toString());
+            }
+        }
+        assertNotSame(names[0], names[1]);
+    }
+
+    @Test
+    public void getGmtDisplayName_concurrentLookups() throws Exception {
+        final String[] ids = { "Asia/Tokyo", "Europe/Paris", "America/New_York",
+                "Asia/Kolkata" };
+        final String[] expected = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            expected[i] = mUtils.getGmtDisplayName(mContext, ids[i], TIME_MILLIS, true)
+                    .toString();
+        }
+
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < 2000; n++) {
+                        int i = (n + offset) % ids.length;
+                        String name = offset % 2 == 0
+                                ? mUtils.getGmtDisplayName(mContext, ids[i], TIME_MILLIS, true)
+                                        .toString()
+                                : mUtils.getGmtDisplayNames(mContext, new String[] { ids[i] },
+                                        TIME_MILLIS, true)[0].toString();
+                        if (!expected[i].equals(name)) {
+                            failure.set(ids[i] + ": " + name);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+}
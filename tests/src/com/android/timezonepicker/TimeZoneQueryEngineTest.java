@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.text.format.DateUtils;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the search of {@link TimeZoneQueryEngine} over a real catalog.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneQueryEngineTest {
+    private static final String DEFAULT_TIME_ZONE_ID = "America/Los_Angeles";
+    // 2013-07-01 12:00 UTC
+    private static final long TIME_MILLIS = 1372680000000L;
+
+    private TimeZoneQueryEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mEngine = new TimeZoneQueryEngine(new TimeZoneData(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                DEFAULT_TIME_ZONE_ID, TIME_MILLIS));
+        // The matches, not the latency, are tested; a cold VM is slow
+        mEngine.setFuzzySearchTimeBudget(10 * 1000);
+    }
+
+    private TimeZoneQueryEngine.Response suggest(String query) {
+        return mEngine.suggest(TimeZoneQueryEngine.Request.forSuggestions(query,
+                TimeZoneFilterTypeAdapter.DEFAULT_MAX_RESULTS, null));
+    }
+
+    @Test
+    public void suggest_prefixesWithoutNumber() {
+        for (String query : new String[] { "gmt", "gmt+", "+", "-", "" }) {
+            TimeZoneQueryEngine.Response response = suggest(query);
+            assertNotNull(query, response);
+        }
+        assertEquals(TimeZoneQueryEngine.FILTER_TYPE_NONE, suggest("").filterType);
+    }
+
+    @Test
+    public void suggest_gmtOffset() {
+        TimeZoneQueryEngine.Response response = suggest("gmt+5");
+        assertEquals(TimeZoneQueryEngine.FILTER_TYPE_GMT, response.filterType);
+        assertEquals(TimeZoneQueryEngine.FILTER_TYPE_GMT, response.suggestions.get(0).type);
+        assertEquals(5, response.suggestions.get(0).time);
+    }
+
+    @Test
+    public void suggest_limit() {
+        TimeZoneQueryEngine.Response response = mEngine.suggest(
+                TimeZoneQueryEngine.Request.forSuggestions("a", 3, null));
+        assertTrue(response.suggestions.size() <= 3);
+    }
+
+    private boolean suggestsCountry(String query, String country) {
+        for (TimeZoneQueryEngine.Suggestion suggestion : suggest(query).suggestions) {
+            if (suggestion.type == TimeZoneQueryEngine.FILTER_TYPE_COUNTRY
+                    && country.equals(suggestion.constraint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void suggest_typos() {
+        assertTrue(suggestsCountry("phillipines", "Philippines"));
+        assertTrue(suggestsCountry("kazakstan", "Kazakhstan"));
+    }
+
+    @Test
+    public void suggest_typosAddedToFewExactMatches() {
+        // "iran" only matches Iran exactly, so one typo away is added
+        assertTrue(suggestsCountry("iran", "Iran"));
+        assertTrue(suggestsCountry("iran", "Iraq"));
+        assertEquals("Iran", suggest("iran").suggestions.get(0).constraint);
+    }
+
+    @Test
+    public void suggest_countriesWithMoreZonesFirst() {
+        // Cambodia and Cameroon sort before Canada, but have a single zone
+        assertEquals("Canada", suggest("ca").suggestions.get(0).constraint);
+    }
+
+    private TimeZoneQueryEngine.Response getTimeZones(int filterType, String str, int time,
+            int[] recents) {
+        return mEngine.getTimeZones(
+                TimeZoneQueryEngine.Request.forTimeZones(filterType, str, time, recents));
+    }
+
+    private boolean containsTimeZone(TimeZoneQueryEngine.Response response, String id) {
+        final TimeZoneData tzd = mEngine.getTimeZoneData();
+        for (int i = 0; i < response.getTimeZoneCount(); i++) {
+            if (id.equals(tzd.get(response.getTimeZoneIndex(i)).mTzId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void getTimeZones_none() {
+        final TimeZoneData tzd = mEngine.getTimeZoneData();
+        final int defaultIndex = tzd.getDefaultTimeZoneIndex();
+        final int tokyo = tzd.findIndexByTimeZoneIdSlow("Asia/Tokyo");
+        TimeZoneQueryEngine.Response response = getTimeZones(
+                TimeZoneQueryEngine.FILTER_TYPE_NONE, null, 0,
+                new int[] { defaultIndex, tokyo, -1, tzd.size() });
+        // The default first, the recents after it, each once, unknown ones left out
+        assertEquals(2, response.getTimeZoneCount());
+        assertEquals(defaultIndex, response.getTimeZoneIndex(0));
+        assertEquals(tokyo, response.getTimeZoneIndex(1));
+    }
+
+    @Test
+    public void getTimeZones_country() {
+        final TimeZoneData tzd = mEngine.getTimeZoneData();
+        final String country = tzd.get(tzd.getDefaultTimeZoneIndex()).mCountry;
+        TimeZoneQueryEngine.Response response = getTimeZones(
+                TimeZoneQueryEngine.FILTER_TYPE_COUNTRY, country, 0, null);
+        assertTrue(response.getTimeZoneCount() > 1);
+        assertTrue(containsTimeZone(response, DEFAULT_TIME_ZONE_ID));
+        for (int i = 0; i < response.getTimeZoneCount(); i++) {
+            assertEquals(country, tzd.get(response.getTimeZoneIndex(i)).mCountry);
+        }
+        assertEquals(0, getTimeZones(TimeZoneQueryEngine.FILTER_TYPE_COUNTRY, "Atlantis", 0,
+                null).getTimeZoneCount());
+    }
+
+    @Test
+    public void getTimeZones_gmt() {
+        final TimeZoneData tzd = mEngine.getTimeZoneData();
+        TimeZoneQueryEngine.Response response = getTimeZones(
+                TimeZoneQueryEngine.FILTER_TYPE_GMT, null, 9, null);
+        assertTrue(containsTimeZone(response, "Asia/Tokyo"));
+        // Offsets are grouped by the hour, so GMT+9:30 is listed too
+        for (int i = 0; i < response.getTimeZoneCount(); i++) {
+            TimeZoneInfo tzi = tzd.get(response.getTimeZoneIndex(i));
+            assertEquals(tzi.mTzId, 9, tzi.mTz.getOffset(TIME_MILLIS)
+                    / DateUtils.HOUR_IN_MILLIS);
+        }
+    }
+
+    @Test
+    public void getTimeZones_localTime() {
+        // 12:00 UTC is 21:00 in Tokyo and 05:00 in Los Angeles
+        TimeZoneQueryEngine.Response response = getTimeZones(
+                TimeZoneQueryEngine.FILTER_TYPE_LOCAL_TIME, null, 21 * 60, null);
+        assertTrue(containsTimeZone(response, "Asia/Tokyo"));
+        assertFalse(containsTimeZone(response, DEFAULT_TIME_ZONE_ID));
+    }
+
+    @Test
+    public void getTimeZones_page() {
+        final TimeZoneQueryEngine.Response all = getTimeZones(
+                TimeZoneQueryEngine.FILTER_TYPE_GMT, null, 1, null);
+        assertTrue(all.getTimeZoneCount() > 3);
+        TimeZoneQueryEngine.Response page = mEngine.getTimeZones(new TimeZoneQueryEngine.Request(
+                TimeZoneQueryEngine.FILTER_TYPE_GMT, null, 1, 1, 2, null));
+        assertEquals(all.getTimeZoneCount(), page.totalCount);
+        assertEquals(2, page.getTimeZoneCount());
+        assertEquals(all.getTimeZoneIndex(1), page.getTimeZoneIndex(0));
+        assertEquals(all.getTimeZoneIndex(2), page.getTimeZoneIndex(1));
+    }
+}
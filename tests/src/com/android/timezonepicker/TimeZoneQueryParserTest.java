@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the parsing of GMT offsets and local times typed into the
+ * search box.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneQueryParserTest {
+    private static final int INVALID = Integer.MIN_VALUE;
+
+    @Test
+    public void parseNum_offsets() {
+        assertEquals(5, TimeZoneQueryEngine.parseNum("5", 0));
+        assertEquals(10, TimeZoneQueryEngine.parseNum("+10", 0));
+        assertEquals(-3, TimeZoneQueryEngine.parseNum("-3", 0));
+        assertEquals(5, TimeZoneQueryEngine.parseNum("gmt+5", 3));
+        assertEquals(-11, TimeZoneQueryEngine.parseNum("gmt-11", 3));
+    }
+
+    @Test
+    public void parseNum_nothingToParse() {
+        assertEquals(INVALID, TimeZoneQueryEngine.parseNum("gmt", 3));
+        assertEquals(INVALID, TimeZoneQueryEngine.parseNum("gmt+", 3));
+        assertEquals(INVALID, TimeZoneQueryEngine.parseNum("+", 0));
+        assertEquals(INVALID, TimeZoneQueryEngine.parseNum("", 0));
+    }
+
+    @Test
+    public void parseNum_invalid() {
+        assertEquals(INVALID, TimeZoneQueryEngine.parseNum("123", 0));
+        assertEquals(INVALID, TimeZoneQueryEngine.parseNum("1a", 0));
+        assertEquals(INVALID, TimeZoneQueryEngine.parseNum("gmt+x", 3));
+        assertEquals(INVALID, TimeZoneQueryEngine.parseNum("--1", 0));
+    }
+
+    @Test
+    public void parseLocalTime_times() {
+        assertEquals(10 * 60 + 30, TimeZoneQueryEngine.parseLocalTime("10:30"));
+        assertEquals(21 * 60, TimeZoneQueryEngine.parseLocalTime("9pm"));
+        assertEquals(21 * 60, TimeZoneQueryEngine.parseLocalTime("9 pm"));
+        assertEquals(0, TimeZoneQueryEngine.parseLocalTime("12am"));
+        assertEquals(12 * 60, TimeZoneQueryEngine.parseLocalTime("12p"));
+    }
+
+    @Test
+    public void parseLocalTime_invalid() {
+        // A bare number is a GMT offset
+        assertEquals(-1, TimeZoneQueryEngine.parseLocalTime("10"));
+        assertEquals(-1, TimeZoneQueryEngine.parseLocalTime(""));
+        assertEquals(-1, TimeZoneQueryEngine.parseLocalTime("gmt"));
+        assertEquals(-1, TimeZoneQueryEngine.parseLocalTime("10:7"));
+        assertEquals(-1, TimeZoneQueryEngine.parseLocalTime("10:60"));
+        assertEquals(-1, TimeZoneQueryEngine.parseLocalTime("13pm"));
+        assertEquals(-1, TimeZoneQueryEngine.parseLocalTime("9px"));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for what {@link TimeZoneResultAdapter} lists before the rows built in
+ * the background arrive. Run on the main thread, which never gets to
+ * deliver them here.
+ */
+@RunWith(JUnit4.class)
+public class TimeZoneResultAdapterTest {
+    private static final String DEFAULT_TIME_ZONE_ID = "America/Los_Angeles";
+    // 2013-07-01 12:00 UTC
+    private static final long TIME_MILLIS = 1372680000000L;
+
+    private Context mContext;
+    private TimeZoneQueryEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mEngine = new TimeZoneQueryEngine(new TimeZoneData(mContext, DEFAULT_TIME_ZONE_ID,
+                TIME_MILLIS));
+    }
+
+    @Test
+    public void defaultTimeZones_listedRightAway() {
+        TimeZoneResultAdapter adapter = new TimeZoneResultAdapter(mContext, mEngine, null);
+        assertTrue(adapter.hasResults());
+        assertTrue(adapter.getCount() >= 1);
+        assertEquals(DEFAULT_TIME_ZONE_ID, ((TimeZoneInfo) adapter.getItem(0)).mTzId);
+    }
+
+    @Test
+    public void otherFilters_keepThePreviousRows() {
+        TimeZoneResultAdapter adapter = new TimeZoneResultAdapter(mContext, mEngine, null);
+        int count = adapter.getCount();
+        adapter.onSetFilter(TimeZoneFilterTypeAdapter.FILTER_TYPE_GMT, null, 9);
+        assertEquals(count, adapter.getCount());
+        assertEquals(DEFAULT_TIME_ZONE_ID, ((TimeZoneInfo) adapter.getItem(0)).mTzId);
+        assertEquals(TimeZoneFilterTypeAdapter.FILTER_TYPE_GMT, adapter.getLastFilterType());
+
+        // Back to the default list, which replaces what was being built
+        adapter.onSetFilter(TimeZoneFilterTypeAdapter.FILTER_TYPE_NONE, null, 0);
+        assertEquals(count, adapter.getCount());
+    }
+
+    @Test
+    public void restoreFilter_listsTheSavedRowsRightAway() {
+        TimeZoneResultAdapter adapter = new TimeZoneResultAdapter(mContext, mEngine, null);
+        int[] indices = adapter.getFilteredTimeZoneIndices();
+        TimeZoneRow[] rows = adapter.getRows();
+
+        // As after a rotation: nothing is listed until the saved rows are
+        TimeZoneResultAdapter restored = new TimeZoneResultAdapter(mContext, mEngine, null,
+                false);
+        assertEquals(0, restored.getCount());
+        restored.restoreFilter(TimeZoneFilterTypeAdapter.FILTER_TYPE_GMT, null, 9, indices,
+                rows);
+        assertEquals(indices.length, restored.getCount());
+        assertArrayEquals(indices, restored.getFilteredTimeZoneIndices());
+        assertEquals(TimeZoneFilterTypeAdapter.FILTER_TYPE_GMT, restored.getLastFilterType());
+        assertEquals(9, restored.getLastFilterTime());
+        assertSame(rows[0], restored.getRows()[0]);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Tests for {@link TopKSelector}.
+ */
+@RunWith(JUnit4.class)
+public class TopKSelectorTest {
+
+    private static int[] drain(TopKSelector selector) {
+        int[] out = new int[selector.size()];
+        assertEquals(out.length, selector.drainTieBreakers(out));
+        assertEquals(0, selector.size());
+        return out;
+    }
+
+    @Test
+    public void bestFirst() {
+        TopKSelector selector = new TopKSelector(3);
+        selector.offer(10, 0);
+        selector.offer(50, 1);
+        selector.offer(30, 2);
+        selector.offer(40, 3);
+        selector.offer(20, 4);
+        int[] out = drain(selector);
+        assertEquals(3, out.length);
+        assertEquals(1, out[0]);
+        assertEquals(3, out[1]);
+        assertEquals(2, out[2]);
+    }
+
+    @Test
+    public void tiesByLowerTieBreaker() {
+        TopKSelector selector = new TopKSelector(2);
+        selector.offer(5, 9);
+        selector.offer(5, 2);
+        selector.offer(5, 7);
+        int[] out = drain(selector);
+        assertEquals(2, out[0]);
+        assertEquals(7, out[1]);
+    }
+
+    @Test
+    public void fewerThanK() {
+        TopKSelector selector = new TopKSelector(10);
+        selector.offer(-3, 1);
+        selector.offer(4, 0);
+        int[] out = drain(selector);
+        assertEquals(2, out.length);
+        assertEquals(0, out[0]);
+        assertEquals(1, out[1]);
+    }
+
+    @Test
+    public void zeroK() {
+        TopKSelector selector = new TopKSelector(0);
+        selector.offer(1, 1);
+        assertEquals(0, drain(selector).length);
+    }
+
+    @Test
+    public void matchesSort() {
+        Random random = new Random(0);
+        for (int round = 0; round < 50; round++) {
+            final int n = random.nextInt(200);
+            final int k = random.nextInt(20);
+            final int[] scores = new int[n];
+            ArrayList<Integer> candidates = new ArrayList<Integer>();
+            TopKSelector selector = new TopKSelector(k);
+            for (int i = 0; i < n; i++) {
+                // Few distinct scores, so that ties are common
+                scores[i] = random.nextInt(10) - 5;
+                candidates.add(i);
+                selector.offer(scores[i], i);
+            }
+            Collections.sort(candidates, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    if (scores[a] != scores[b]) {
+                        return scores[a] > scores[b] ? -1 : 1;
+                    }
+                    return a - b;
+                }
+            });
+
+            int[] out = drain(selector);
+            assertEquals(Math.min(k, n), out.length);
+            for (int i = 0; i < out.length; i++) {
+                assertEquals(candidates.get(i).intValue(), out[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.timezonepicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Tests for {@link TzDataTabReader}.
+ */
+@RunWith(JUnit4.class)
+public class TzDataTabReaderTest {
+
+    private static TzDataTabReader reader(String text) throws IOException {
+        return new TzDataTabReader(new ByteArrayInputStream(text.getBytes("US-ASCII")));
+    }
+
+    @Test
+    public void zone1970Tab_allCountryCodes() throws IOException {
+        TzDataTabReader reader = reader("# comment\n"
+                + "\n"
+                + "DE,DK,NO,SE,SJ\t+5230+01322\tEurope/Berlin\tmost of Germany\n"
+                + "AE,OM,RE,SC,TF\t+2518+05518\tAsia/Dubai\tCrozet\r\n"
+                + "AD\t+4230+00131\tEurope/Andorra\n");
+
+        assertTrue(reader.nextLine());
+        assertEquals("Europe/Berlin", reader.getString(2));
+        assertEquals(5, reader.getCountryCodeCount(0));
+        assertEquals("DE", reader.getCountryCode(0));
+        assertEquals("DK", reader.getCountryCode(0, 1));
+        assertEquals("SJ", reader.getCountryCode(0, 4));
+        assertNull(reader.getCountryCode(0, 5));
+
+        assertTrue(reader.nextLine());
+        assertEquals(5, reader.getCountryCodeCount(0));
+        assertEquals("OM", reader.getCountryCode(0, 1));
+
+        assertTrue(reader.nextLine());
+        assertEquals(1, reader.getCountryCodeCount(0));
+        assertEquals("AD", reader.getCountryCode(0));
+        assertFalse(reader.nextLine());
+    }
+
+    @Test
+    public void countryCodes_malformed() throws IOException {
+        TzDataTabReader reader = reader("de\t+0+0\tA\n"
+                + "DE,D\t+0+0\tB\n"
+                + "DEU\t+0+0\tC\n");
+        assertTrue(reader.nextLine());
+        assertEquals(0, reader.getCountryCodeCount(0));
+        assertNull(reader.getCountryCode(0));
+        assertTrue(reader.nextLine());
+        assertEquals(1, reader.getCountryCodeCount(0));
+        assertTrue(reader.nextLine());
+        assertEquals(0, reader.getCountryCodeCount(0));
+    }
+
+    @Test
+    public void backward_runsOfTabs() throws IOException {
+        TzDataTabReader reader = reader("Link\tAsia/Kolkata\t\tAsia/Calcutta\n");
+        assertTrue(reader.nextLine());
+        assertEquals(3, reader.getFieldCount());
+        assertEquals("Asia/Kolkata", reader.getString(1));
+        assertEquals("Asia/Calcutta", reader.getString(2));
+    }
+}